@@ -133,7 +133,7 @@ class IntArray {
   }
 
   /**
-   * Inserts a new element into the array at the given index. If the internal
+   * Appends new elements at the end of the array. If the internal
    * capacity is exceeded, a new bigger array is created and all array is copied
    * into the new array. The old array is discarded.
    *
@@ -142,7 +142,7 @@ class IntArray {
    */
   final public IntArray addAll(int... e) {
     ensureCapacity(size + e.length);
-    System.arraycopy(data, size, e,0, e.length);
+    System.arraycopy(e, 0, data, size, e.length);
     size += e.length;
     return this;
   }
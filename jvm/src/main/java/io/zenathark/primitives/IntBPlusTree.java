@@ -0,0 +1,346 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Juan Carlos Galan Hernandez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.zenathark.primitives;
+
+import static io.zenathark.tools.Misc.*;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class is an implementation of a B+-tree of primitive int keys, a sorted set
+ * for large amounts of keys and range queries.
+ *
+ * <p>Binary trees touch a new cache line on every level, so a search over millions of
+ * keys is a chain of cache misses. Here a node holds up to <tt>ORDER</tt> keys, 16
+ * ints or one 64 bytes cache line, and is scanned linearly, so a search touches about
+ * <tt>log16(n)</tt> lines. Keys live only on the leaves, which are linked in order,
+ * hence a range query descends once and then reads consecutive keys.
+ *
+ * <p>As {@link IntBST}, nodes are not objects: leaves and inner nodes are ids on flat
+ * int arrays. Leaf <tt>l</tt> keeps its keys on <tt>keys[l*ORDER ..]</tt>; inner
+ * node <tt>n</tt> keeps its separators on <tt>separators[n*ORDER ..]</tt> and its
+ * children on <tt>children[n*(ORDER+1) ..]</tt>, the child <tt>i</tt> holds the keys
+ * from the separator <tt>i-1</tt> (inclusive) to the separator <tt>i</tt>.
+ *
+ * <p>This class is a member of the <a href="https://github.com/zenathark/ptools">
+ * Personal Tools</a> project which contains several implementations of useful
+ * algorithms for programming contests and small projects.
+ *
+ * @author Juan Carlos Galan Hernandez (Zenathark)
+ * @see IntBST
+ * @since 1.8
+ */
+
+public class IntBPlusTree {
+  // Private
+  final static private int NONE = -1;
+
+  // Public
+  /** Maximum number of keys of a node */
+  final static public int ORDER = 16;
+
+  // Leaves
+  private int[] keys = new int[ORDER];
+  private int[] counts = new int[1];
+  private int[] next = {NONE};
+  private int leaves = 1;
+  // Inner nodes
+  private int[] separators = {};
+  private int[] children = {};
+  private int[] innerCounts = {};
+  private int inners;
+
+  private int root;
+  /** Number of inner levels above the leaves, 0 when the root is a leaf */
+  private int levels;
+  private int size;
+
+  public IntBPlusTree() {
+  }
+
+  /**
+   * Builds a tree from sorted keys in <tt>O(n)</tt>, filling the nodes bottom up.
+   *
+   * @param sorted strictly increasing keys
+   * @return a new tree
+   * @throws IllegalArgumentException if the keys are not strictly increasing
+   */
+  public static IntBPlusTree fromSorted(IntArray sorted) {
+    return fromSorted(sorted.data, sorted.size);
+  }
+
+  /**
+   * Builds a tree from the first keys of a sorted array in <tt>O(n)</tt>.
+   *
+   * @param sorted strictly increasing keys
+   * @param size number of keys to take
+   * @return a new tree
+   * @throws IllegalArgumentException if the keys are not strictly increasing
+   */
+  public static IntBPlusTree fromSorted(int[] sorted, int size) {
+    checkSorted(sorted, size);
+    IntBPlusTree t = new IntBPlusTree();
+    if (size == 0) return t;
+    // Leaves, keys spread evenly so every leaf but the last ones is full
+    int n = (size + ORDER - 1) / ORDER;
+    t.keys = new int[n * ORDER];
+    t.counts = new int[n];
+    t.next = new int[n];
+    for (int l = 0, from = 0; l < n; l++) {
+      int to = (int) ((long) size * (l + 1) / n);
+      System.arraycopy(sorted, from, t.keys, l * ORDER, to - from);
+      t.counts[l] = to - from;
+      t.next[l] = l + 1 < n ? l + 1 : NONE;
+      from = to;
+    }
+    t.leaves = n;
+    t.size = size;
+    // Inner levels, mins[i] is the smallest key under the i-th node of the level below
+    int[] level = new int[n];
+    int[] mins = new int[n];
+    for (int l = 0; l < n; l++) {
+      level[l] = l;
+      mins[l] = t.keys[l * ORDER];
+    }
+    while (n > 1) {
+      int parents = (n + ORDER) / (ORDER + 1);
+      int[] upper = new int[parents];
+      int[] upperMins = new int[parents];
+      for (int p = 0, from = 0; p < parents; p++) {
+        int to = (int) ((long) n * (p + 1) / parents);
+        int node = t.newInner();
+        for (int c = from; c < to; c++) {
+          t.children[node * (ORDER + 1) + c - from] = level[c];
+          if (c > from) t.separators[node * ORDER + c - from - 1] = mins[c];
+        }
+        t.innerCounts[node] = to - from - 1;
+        upper[p] = node;
+        upperMins[p] = mins[from];
+        from = to;
+      }
+      level = upper;
+      mins = upperMins;
+      n = parents;
+      t.levels++;
+    }
+    t.root = level[0];
+    return t;
+  }
+
+  /**
+   * Inserts a key, splitting the full nodes on its path.
+   *
+   * @param key the key to be inserted
+   * @return true if the key was not on the tree
+   */
+  final public boolean add(int key) {
+    int[] path = new int[levels];
+    int node = root;
+    for (int d = 0; d < levels; d++) {
+      path[d] = node;
+      node = children[node * (ORDER + 1) + childIndex(node, key)];
+    }
+    int pos = lowerBound(keys, node * ORDER, counts[node], key);
+    if (pos < counts[node] && keys[node * ORDER + pos] == key) return false;
+    size++;
+    if (counts[node] < ORDER) {
+      insertAt(keys, node * ORDER, counts[node]++, pos, key);
+      return true;
+    }
+    // Split the leaf, the upper half goes to a new leaf
+    int right = newLeaf();
+    int half = ORDER / 2;
+    System.arraycopy(keys, node * ORDER + half, keys, right * ORDER, ORDER - half);
+    counts[node] = half;
+    counts[right] = ORDER - half;
+    next[right] = next[node];
+    next[node] = right;
+    if (pos <= half) insertAt(keys, node * ORDER, counts[node]++, pos, key);
+    else insertAt(keys, right * ORDER, counts[right]++, pos - half, key);
+    // Push the new node up, splitting the inner nodes while they are full
+    int separator = keys[right * ORDER];
+    for (int d = levels - 1; d >= 0; d--) {
+      int parent = path[d];
+      int at = childIndex(parent, separator);
+      int count = innerCounts[parent];
+      if (count < ORDER) {
+        insertAt(separators, parent * ORDER, count, at, separator);
+        insertAt(children, parent * (ORDER + 1), count + 1, at + 1, right);
+        innerCounts[parent]++;
+        return true;
+      }
+      // Full node, split the ORDER + 1 separators around the middle one
+      int[] seps = new int[ORDER + 1];
+      int[] kids = new int[ORDER + 2];
+      System.arraycopy(separators, parent * ORDER, seps, 0, ORDER);
+      System.arraycopy(children, parent * (ORDER + 1), kids, 0, ORDER + 1);
+      insertAt(seps, 0, ORDER, at, separator);
+      insertAt(kids, 0, ORDER + 1, at + 1, right);
+      int sibling = newInner();
+      System.arraycopy(seps, 0, separators, parent * ORDER, half);
+      System.arraycopy(kids, 0, children, parent * (ORDER + 1), half + 1);
+      innerCounts[parent] = half;
+      System.arraycopy(seps, half + 1, separators, sibling * ORDER, ORDER - half);
+      System.arraycopy(kids, half + 1, children, sibling * (ORDER + 1), ORDER - half + 1);
+      innerCounts[sibling] = ORDER - half;
+      separator = seps[half];
+      right = sibling;
+    }
+    // The root was split
+    int top = newInner();
+    separators[top * ORDER] = separator;
+    children[top * (ORDER + 1)] = root;
+    children[top * (ORDER + 1) + 1] = right;
+    innerCounts[top] = 1;
+    root = top;
+    levels++;
+    return true;
+  }
+
+  /**
+   * Checks if a key is on the tree.
+   *
+   * @param key the key to look for
+   * @return true if the key is on the tree
+   */
+  final public boolean contains(int key) {
+    int leaf = leafOf(key);
+    int pos = lowerBound(keys, leaf * ORDER, counts[leaf], key);
+    return pos < counts[leaf] && keys[leaf * ORDER + pos] == key;
+  }
+
+  /**
+   * Visits in increasing order all the keys on <tt>[from, to)</tt>.
+   *
+   * @param from smallest key to visit, inclusive
+   * @param to largest key to visit, exclusive
+   * @param consumer receives every key
+   */
+  final public void range(int from, int to, IntConsumer consumer) {
+    if (from >= to) return;
+    int leaf = leafOf(from);
+    int pos = lowerBound(keys, leaf * ORDER, counts[leaf], from);
+    for (; leaf != NONE; leaf = next[leaf], pos = 0) {
+      int base = leaf * ORDER;
+      for (int end = base + counts[leaf], i = base + pos; i < end; i++) {
+        if (keys[i] >= to) return;
+        consumer.accept(keys[i]);
+      }
+    }
+  }
+
+  /**
+   * Counts the keys on <tt>[from, to)</tt>, without visiting them one by one.
+   *
+   * @param from smallest key to count, inclusive
+   * @param to largest key to count, exclusive
+   * @return number of keys on the range
+   */
+  final public int count(int from, int to) {
+    if (from >= to) return 0;
+    int leaf = leafOf(from);
+    int ans = -lowerBound(keys, leaf * ORDER, counts[leaf], from);
+    for (; leaf != NONE; leaf = next[leaf]) {
+      int base = leaf * ORDER;
+      if (counts[leaf] > 0 && keys[base + counts[leaf] - 1] >= to)
+        return ans + lowerBound(keys, base, counts[leaf], to);
+      ans += counts[leaf];
+    }
+    return ans;
+  }
+
+  /** Visits all the keys in increasing order */
+  final public void forEach(IntConsumer consumer) {
+    for (int leaf = firstLeaf(); leaf != NONE; leaf = next[leaf])
+      for (int i = leaf * ORDER, end = i + counts[leaf]; i < end; i++)
+        consumer.accept(keys[i]);
+  }
+
+  /** Number of keys on the tree */
+  final public int size() { return size; }
+
+  final public boolean empty() { return size == 0; }
+
+  /** Number of levels of the tree, including the leaves */
+  final public int height() { return levels + 1; }
+
+  // Descends to the leaf that holds, or would hold, a key
+  private int leafOf(int key) {
+    int node = root;
+    for (int d = 0; d < levels; d++)
+      node = children[node * (ORDER + 1) + childIndex(node, key)];
+    return node;
+  }
+
+  private int firstLeaf() {
+    int node = root;
+    for (int d = 0; d < levels; d++)
+      node = children[node * (ORDER + 1)];
+    return node;
+  }
+
+  // Number of separators <= key, which is the child holding the key
+  private int childIndex(int node, int key) {
+    int base = node * ORDER;
+    int i = 0;
+    for (int count = innerCounts[node]; i < count && separators[base + i] <= key; i++);
+    return i;
+  }
+
+  // Number of keys < key on a node, a linear scan beats a binary search on a cache line
+  private static int lowerBound(int[] arr, int base, int count, int key) {
+    int i = 0;
+    while (i < count && arr[base + i] < key) i++;
+    return i;
+  }
+
+  // Shifts the elements from pos one place to the right and stores val at pos
+  private static void insertAt(int[] arr, int base, int count, int pos, int val) {
+    System.arraycopy(arr, base + pos, arr, base + pos + 1, count - pos);
+    arr[base + pos] = val;
+  }
+
+  private int newLeaf() {
+    if (leaves == counts.length) {
+      int len = leaves * 3 / 2 + 1;
+      keys = Arrays.copyOf(keys, len * ORDER);
+      counts = Arrays.copyOf(counts, len);
+      next = Arrays.copyOf(next, len);
+    }
+    counts[leaves] = 0;
+    next[leaves] = NONE;
+    return leaves++;
+  }
+
+  private int newInner() {
+    if (inners == innerCounts.length) {
+      int len = inners * 3 / 2 + 1;
+      separators = Arrays.copyOf(separators, len * ORDER);
+      children = Arrays.copyOf(children, len * (ORDER + 1));
+      innerCounts = Arrays.copyOf(innerCounts, len);
+    }
+    innerCounts[inners] = 0;
+    return inners++;
+  }
+}
@@ -23,7 +23,9 @@
 
 package io.zenathark.primitives;
 import static io.zenathark.tools.Misc.*;
+import io.zenathark.tools.FrozenBST;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * This class is an implementation of a Binary Search Tree (BST) using
@@ -37,6 +39,11 @@ import java.util.Iterator;
  * sorting. It will hold two integer arrays internally, a hash index and its associated
  * values.
  *
+ * <p>The tree is kept balanced as an AVL tree, so push, remove and search take
+ * <tt>O(log n)</tt> steps even for sorted input. Slots of removed values are kept on a
+ * free list and reused by the next push, so the arrays do not grow past the largest
+ * number of values held at once.
+ *
  * <p>This class is a member of the <a href="https://github.com/zenathark/ptools">
  * Personal Tools</a> project which contains several implementations of useful
  * algorithms for programming contests and small projects.
@@ -47,19 +54,28 @@ import java.util.Iterator;
 
 public class IntBST {
   // Private
-  final static private int ROOT = 0;
+  final static private int NONE = -1;
+  /** Number of columns of a node on the table */
+  final static private int STRIDE = 5;
 
-  /** Array holding the stored values */
+  /** Array holding the stored values, <tt>data[i]</tt> is the value of node i */
   final public IntArray data;
   /**
-   * A hash table referencing the data. Each data is a triad:
-   * <tt>table[i]</tt> The index of the data
-   * <tt>table[i+1]</tt> Parent node
-   * <tt>table[i+2]</tt> Left node
-   * <tt>table[i+3]</tt> Right node
+   * A table referencing the data. Each node i is a row of <tt>STRIDE</tt> ints:
+   * <tt>table[i*STRIDE]</tt> Parent node
+   * <tt>table[i*STRIDE+1]</tt> Left node
+   * <tt>table[i*STRIDE+2]</tt> Right node
+   * <tt>table[i*STRIDE+3]</tt> Height of the subtree rooted at the node, 1 for a leaf
+   * <tt>table[i*STRIDE+4]</tt> Number of nodes of the subtree rooted at the node
    *
+   * <p>Missing nodes are -1. The left column of a free slot links to the next free slot.
    */
   final public IntArray table;
+  /** Root node, -1 if the tree is empty */
+  private int root = NONE;
+  /** First free slot, -1 if there is none */
+  private int free = NONE;
+  private int size;
 
   public IntBST() {
     this(0);
@@ -67,39 +83,48 @@ public class IntBST {
 
   public IntBST(int initialCapacity) {
     this.data = new IntArray(initialCapacity);
-    this.table = new IntArray(initialCapacity * 4);
+    this.table = new IntArray(initialCapacity * STRIDE);
   }
 
+  /**
+   * Inserts a new value, rebalancing the tree on the way back to the root.
+   *
+   * @param val the value to be inserted
+   * @return this instance
+   * @throws IllegalArgumentException if the value is already on the tree
+   */
   final public IntBST push(int val) {
-    final int idx = data.add(val);
-    if (idx == ROOT) {
-      table.addAll(idx, -1, -1, -1);
-    }
-    int cNode = ROOT;
-    while (true) {
-      if (val < get(cNode)) {
-        if (hasLeftNode(cNode)) cNode = leftNode(cNode);
-        else {
-          setLeftNode(cNode, idx);
-          setParent(idx, cNode);
-          break;
-        }
-      } else if (val > get(cNode)) {
-        if (hasRightNode(cNode)) cNode = rightNode(cNode);
-        else {
-          setRightNode(cNode, idx);
-          setParent(idx, cNode);
-          break;
-        }
-      } else { // Same labels are not allowed
-        throw new IllegalArgumentException(Sprintf("Error: Repeated value %i", val));
-      }
+    int cNode = root;
+    int parent = NONE;
+    while (cNode >= 0) {
+      parent = cNode;
+      if (val < get(cNode)) cNode = leftNode(cNode);
+      else if (val > get(cNode)) cNode = rightNode(cNode);
+      else // Same labels are not allowed
+        throw new IllegalArgumentException(Sprintf("Error: Repeated value %d", val));
     }
+    final int idx = newNode(val, parent);
+    if (parent < 0) root = idx;
+    else if (val < get(parent)) setLeftNode(parent, idx);
+    else setRightNode(parent, idx);
+    size++;
+    retrace(parent);
     return this;
   }
 
+  /**
+   * Looks for a value.
+   *
+   * <p>Node ids are only valid until the next removal: {@link #remove(int)} copies the
+   * value of the in-order successor into the slot of the removed node and frees the
+   * slot of the successor, so an id may then hold another value or be reused by the
+   * next push. Use {@link #get(int)} on the result right away, or search again.
+   *
+   * @param val the value to look for
+   * @return the node holding the value, -1 if it is not on the tree
+   */
   final public int search(int val) {
-    int ans = ROOT;
+    int ans = root;
     while (ans >= 0) {
       if (val == get(ans)) break;
       if (val < get(ans)) {
@@ -111,74 +136,317 @@ public class IntBST {
     return ans;
   }
 
+  final public boolean contains(int val) {
+    return search(val) >= 0;
+  }
+
   /**
-   * Remove a node. This function removes a node and replaces it with is in-order predecessor.
+   * Counts the values smaller than a given one, in <tt>O(log n)</tt> using the subtree
+   * sizes of the table.
    *
-   * @param val the value to be removed
+   * @param val the value to compare with, it does not need to be on the tree
+   * @return number of values <tt>&lt; val</tt>, the position val has or would have
    */
-  final public IntBST remove(int val) {
-      int d = search(val);
-      if (d < 0) return this;
-      if (!hasLeftNode(d) && !hasRightNode(d)) // Is leaf
-        if (leftNode(parent(d)) == val) setLeftNode(d, -1);
-        else setRightNode(d, -1);
-      else if (!hasLeftNode(d) && hasRightNode(d)) // Has left node
-        if (leftNode(parent(d)) == val) setLeftNode(parent(d), rightNode(d));
-        else setRightNode(parent(d), rightNode(d));
-      else if (hasLeftNode(d) && !hasRightNode(d)) // Has right node
-        if (leftNode(parent(d)) == val) setLeftNode(parent(d), leftNode(d));
-        else setRightNode(parent(d), leftNode(d));
-      else { // Has both nodes
-        int rep = leftNode(d);
-        while (rightNode(rep) >= 0) rep = rightNode(rep);
-        if (leftNode(parent(d)) == val) setLeftNode(parent(d), rep);
-        else setRightNode(parent(d), rep);
+  final public int rank(int val) {
+    int ans = 0;
+    int cNode = root;
+    while (cNode >= 0) {
+      if (val <= get(cNode)) {
+        cNode = leftNode(cNode);
+      } else {
+        ans += count(leftNode(cNode)) + 1;
+        cNode = rightNode(cNode);
+      }
+    }
+    return ans;
+  }
+
+  /**
+   * Finds the k-th smallest value, in <tt>O(log n)</tt> using the subtree sizes of the
+   * table.
+   *
+   * @param k position of the value, 0 for the smallest
+   * @return the value with k smaller values on the tree
+   * @throws IndexOutOfBoundsException if k is not on <tt>[0, size)</tt>
+   */
+  final public int select(int k) {
+    if (k < 0 || k >= size)
+      throw new IndexOutOfBoundsException(String.format("Index: %d, Size %d", k, size));
+    int cNode = root;
+    while (true) {
+      int left = count(leftNode(cNode));
+      if (k < left) {
+        cNode = leftNode(cNode);
+      } else if (k == left) {
+        return get(cNode);
+      } else {
+        k -= left + 1;
+        cNode = rightNode(cNode);
       }
+    }
+  }
 
+  /**
+   * Remove a node. This function removes a node and replaces it with is in-order successor.
+   * The slot of the removed node is reused by the next push.
+   *
+   * @param val the value to be removed
+   * @return this instance
+   */
+  final public IntBST remove(int val) {
+    int d = search(val);
+    if (d < 0) return this;
+    if (hasLeftNode(d) && hasRightNode(d)) { // Has both nodes
+      int rep = rightNode(d);
+      while (hasLeftNode(rep)) rep = leftNode(rep);
+      data.data[d] = get(rep);
+      d = rep;
+    }
+    // d has one child at most
+    int child = hasLeftNode(d) ? leftNode(d) : rightNode(d);
+    int parent = parent(d);
+    replaceChild(parent, d, child);
+    if (child >= 0) setParent(child, parent);
+    freeNode(d);
+    size--;
+    retrace(parent);
     return this;
   }
 
+  /**
+   * Moves the pivot over its parent, the parent becomes its left child. Parent links,
+   * heights and subtree sizes of both nodes are updated.
+   *
+   * @param pivot right child of its parent
+   * @return this instance
+   */
   final public IntBST rotateLeft(int pivot) {
     int parent = parent(pivot);
-    setRightNode(parent, leftNode(pivot));
+    int inner = leftNode(pivot);
+    setRightNode(parent, inner);
+    if (inner >= 0) setParent(inner, parent);
+    replaceChild(parent(parent), parent, pivot);
+    setParent(pivot, parent(parent));
     setLeftNode(pivot, parent);
+    setParent(parent, pivot);
+    update(parent);
+    update(pivot);
     return this;
   }
 
+  /**
+   * Moves the pivot over its parent, the parent becomes its right child. Parent links,
+   * heights and subtree sizes of both nodes are updated.
+   *
+   * @param pivot left child of its parent
+   * @return this instance
+   */
   final public IntBST rotateRight(int pivot) {
     int parent = parent(pivot);
-    setLeftNode(parent, rightNode(pivot));
+    int inner = rightNode(pivot);
+    setLeftNode(parent, inner);
+    if (inner >= 0) setParent(inner, parent);
+    replaceChild(parent(parent), parent, pivot);
+    setParent(pivot, parent(parent));
     setRightNode(pivot, parent);
+    setParent(parent, pivot);
+    update(parent);
+    update(pivot);
     return this;
   }
 
-  private void setParent(int i, int v) { table.data[i*3 + 1] = v; }
+  // Walks from a node up to the root fixing heights and sizes, rotating unbalanced nodes
+  private void retrace(int node) {
+    while (node >= 0) {
+      update(node);
+      int balance = height(leftNode(node)) - height(rightNode(node));
+      if (balance > 1) {
+        int l = leftNode(node);
+        if (height(leftNode(l)) < height(rightNode(l))) rotateLeft(rightNode(l));
+        node = leftNode(node);
+        rotateRight(node);
+      } else if (balance < -1) {
+        int r = rightNode(node);
+        if (height(rightNode(r)) < height(leftNode(r))) rotateRight(leftNode(r));
+        node = rightNode(node);
+        rotateLeft(node);
+      }
+      node = parent(node);
+    }
+  }
+
+  // Links child in place of old under parent, or as the root if there is no parent
+  private void replaceChild(int parent, int old, int child) {
+    if (parent < 0) root = child;
+    else if (leftNode(parent) == old) setLeftNode(parent, child);
+    else setRightNode(parent, child);
+  }
+
+  private int newNode(int val, int parent) {
+    int idx = free;
+    if (idx >= 0) {
+      free = leftNode(idx);
+      data.data[idx] = val;
+    } else {
+      idx = data.add(val);
+      table.addAll(NONE, NONE, NONE, 1, 1);
+    }
+    setParent(idx, parent);
+    setLeftNode(idx, NONE);
+    setRightNode(idx, NONE);
+    setHeight(idx, 1);
+    setCount(idx, 1);
+    return idx;
+  }
+
+  private void freeNode(int i) {
+    setParent(i, NONE);
+    setLeftNode(i, free);
+    setRightNode(i, NONE);
+    setHeight(i, 0);
+    setCount(i, 0);
+    free = i;
+  }
+
+  // Recomputes the height and the subtree size of a node from its children
+  private void update(int i) {
+    setHeight(i, Math.max(height(leftNode(i)), height(rightNode(i))) + 1);
+    setCount(i, count(leftNode(i)) + count(rightNode(i)) + 1);
+  }
+
+  private void setParent(int i, int v) { table.data[i*STRIDE] = v; }
+
+  private void setLeftNode(int i, int v) { table.data[i*STRIDE + 1] = v; }
+
+  private void setRightNode(int i, int v) { table.data[i*STRIDE + 2] = v; }
+
+  private void setHeight(int i, int v) { table.data[i*STRIDE + 3] = v; }
+
+  private void setCount(int i, int v) { table.data[i*STRIDE + 4] = v; }
+
+  private int parent(int i) { return table.data[i*STRIDE]; }
+
+  private int leftNode(int i) { return table.data[i*STRIDE + 1]; }
+
+  private int rightNode(int i) { return table.data[i*STRIDE + 2]; }
+
+  // Height of a subtree, 0 for a missing node
+  private int height(int i) { return i < 0 ? 0 : table.data[i*STRIDE + 3]; }
+
+  // Size of a subtree, 0 for a missing node
+  private int count(int i) { return i < 0 ? 0 : table.data[i*STRIDE + 4]; }
+
+  private boolean hasParent(int i) { return table.data[i*STRIDE] >= 0; }
+
+  private boolean hasLeftNode(int i) { return table.data[i*STRIDE + 1] >= 0; }
+
+  private boolean hasRightNode(int i) { return table.data[i*STRIDE + 2] >= 0; }
+
+  /** Number of values on the tree */
+  final public int size() { return size; }
 
-  private void setLeftNode(int i, int v) { table.data[i*3 + 2] = v; }
+  final public boolean empty() { return size == 0; }
 
-  private void setRightNode(int i, int v) { table.data[i*3 + 3] = v; }
+  /** Height of the tree, 0 if it is empty */
+  final public int height() { return height(root); }
 
-  private int parent(int i) { return table.data[i*3+1]; }
+  /** Root node, -1 if the tree is empty */
+  final public int root() { return root; }
 
-  private int leftNode(int i) { return table.data[i*3+2]; }
+  /** Value held by a node */
+  final public int get(int idx) { return data.data[idx]; }
 
-  private int rightNode(int i) { return table.data[i*3+3]; }
+  /**
+   * Copies the values into an immutable {@link FrozenBST}, which searches faster than
+   * walking the table. Later changes to the tree are not reflected.
+   *
+   * @return the frozen tree
+   */
+  final public FrozenBST freeze() {
+    return FrozenBST.of(toArray(), size);
+  }
 
-  private boolean hasParent(int i) { return table.data[i*3+1] < 0; }
+  /** Returns the values in increasing order */
+  final public int[] toArray() {
+    int[] sorted = new int[size];
+    int i = 0;
+    IntArray stack = new IntArray(height() + 1);
+    int cNode = root;
+    while (cNode >= 0 || !stack.empty()) {
+      while (cNode >= 0) {
+        stack.add(cNode);
+        cNode = leftNode(cNode);
+      }
+      cNode = stack.data[--stack.size];
+      sorted[i++] = get(cNode);
+      cNode = rightNode(cNode);
+    }
+    return sorted;
+  }
 
-  private boolean hasLeftNode(int i) { return table.data[i*3+2] < 0; }
+  /**
+   * Builds a perfectly balanced tree from sorted values in <tt>O(n)</tt>. The value
+   * <tt>keys[i]</tt> is stored on the node i, the middle value of every range becomes
+   * the root of its subtree.
+   *
+   * @param keys strictly increasing values
+   * @return a new tree
+   * @throws IllegalArgumentException if the values are not strictly increasing
+   */
+  public static IntBST fromSorted(int[] keys) {
+    checkSorted(keys, keys.length);
+    IntBST t = new IntBST(keys.length);
+    System.arraycopy(keys, 0, t.data.data, 0, keys.length);
+    t.data.size = keys.length;
+    t.table.size = keys.length * STRIDE;
+    t.size = keys.length;
+    t.root = t.build(0, keys.length, NONE);
+    return t;
+  }
 
-  private boolean hasRightNode(int i) { return table.data[i*3+3] < 0; }
+  /**
+   * Builds a perfectly balanced tree from values in any order, sorting them in
+   * parallel first. Repeated values are kept once.
+   *
+   * @param keys the values of the tree
+   * @return a new tree
+   */
+  public static IntBST fromUnsorted(int[] keys) {
+    return fromSorted(sortedUnique(keys));
+  }
 
-  private int size() { return table.size; }
+  /**
+   * Merges two trees into a new balanced one in linear time, by merging their in-order
+   * walks. Both trees are left unchanged.
+   *
+   * @return a new tree with the values of both
+   */
+  public static IntBST merge(IntBST a, IntBST b) {
+    return fromSorted(mergeSorted(a.toArray(), b.toArray()));
+  }
 
-  private int get(int idx) { return data.data[table.data[idx]]; }
+  // Links the nodes [from, to) as a subtree below parent, returns its root
+  private int build(int from, int to, int parent) {
+    if (from >= to) return NONE;
+    int mid = (from + to) >>> 1;
+    setParent(mid, parent);
+    int l = build(from, mid, mid);
+    int r = build(mid + 1, to, mid);
+    setLeftNode(mid, l);
+    setRightNode(mid, r);
+    update(mid);
+    return mid;
+  }
 
   // Iterators
+  /**
+   * Iterates over the values in pre-order. The returned cursor is reused on every
+   * step, copy its value to keep it.
+   */
   public Iterable<Int> preorderIterator() {
     return new Iterable<Int>() {
       public Iterator<Int> iterator() {
-        return new PreOrder(IntBST.this, IntBST.this.data.size);
+        return new PreOrder(IntBST.this, IntBST.this.height());
       }
     };
   }
@@ -188,27 +456,28 @@ public class IntBST {
   //
 
   class PreOrder implements Iterator<Int> {
-    final private IntQueue queue;
+    final private IntArray stack;
     final private IntBST bst;
     final private Int cursor = new Int();
 
     public PreOrder(IntBST bst, int initialCapacity) {
-      queue = new IntQueue(initialCapacity >>> 2);
-      queue.push(0);
+      stack = new IntArray(initialCapacity + 1);
+      if (bst.root >= 0) stack.add(bst.root);
       this.bst = bst;
     }
 
     @Override
     public boolean hasNext() {
-      return !queue.empty();
+      return !stack.empty();
     }
 
     @Override
     public Int next() {
-      int ans = queue.pop();
-      if (bst.hasLeftNode(ans)) queue.push(bst.leftNode(ans));
-      if (bst.hasRightNode(ans)) queue.push(bst.rightNode(ans));
-      cursor.val = ans;
+      if (stack.empty()) throw new NoSuchElementException();
+      int ans = stack.data[--stack.size];
+      if (bst.hasRightNode(ans)) stack.add(bst.rightNode(ans));
+      if (bst.hasLeftNode(ans)) stack.add(bst.leftNode(ans));
+      cursor.val = bst.get(ans);
       return cursor;
     }
   }
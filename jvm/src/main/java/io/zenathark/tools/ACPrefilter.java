@@ -0,0 +1,65 @@
+package io.zenathark.tools;
+
+/**
+ * Candidate filter for the start of the matches of a {@link FastACTree}.
+ *
+ * <p>While the automaton is on the root no match is in progress, so the input can be
+ * skipped up to the next position where a word of the dictionary can start. A
+ * position is a candidate if its character is the first character of a word and the
+ * next one is the second character of the same word (or the first character is a
+ * word by itself). Both tests are bitmap lookups, the first one over the raw input
+ * characters with the folding already applied.
+ */
+final class ACPrefilter {
+  static final int ALPHABET = Character.MAX_VALUE + 1;
+
+  /** Input characters that are the first character of a word */
+  private final long[] starts = new long[ALPHABET / 64];
+  /** First two (folded) characters of the words, indexed by <tt>first * width + second</tt> */
+  private final long[] pairs;
+  /** First characters that are a word by themselves */
+  private long alone;
+  private final int width;
+  private final char[] fold;
+
+  ACPrefilter(FastACTree root) {
+    width = root.childs.length;
+    fold = root.fold;
+    pairs = new long[(width * width + 63) / 64];
+    for (int c = 0; c < ALPHABET; c++) {
+      int a = (fold == null ? c : fold[c]) - 'a';
+      if (a >= 0 && a < width && root.childs[a] != null)
+        starts[c >>> 6] |= 1L << c;
+    }
+    for (int a = 0; a < width; a++) {
+      FastACTree first = root.childs[a];
+      if (first == null) continue;
+      if (first.isEnd) alone |= 1L << a;
+      for (int b = 0; b < width; b++)
+        if (first.childs[b] != null)
+          pairs[(a * width + b) >>> 6] |= 1L << (a * width + b);
+    }
+  }
+
+  /**
+   * Returns the first candidate position of a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to test, inclusive
+   * @param to last position to test, exclusive
+   * @return the first position where a match can start, <tt>to</tt> if there is none
+   */
+  int skip(char[] text, int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = text[i];
+      if ((starts[c >>> 6] & (1L << c)) == 0) continue;
+      int a = (fold == null ? c : fold[c]) - 'a';
+      if ((alone & (1L << a)) != 0) return i;
+      if (i + 1 == to) return to;
+      int b = (fold == null ? text[i + 1] : fold[text[i + 1]]) - 'a';
+      if (b >= 0 && b < width && (pairs[(a * width + b) >>> 6] & (1L << (a * width + b))) != 0)
+        return i;
+    }
+    return to;
+  }
+}
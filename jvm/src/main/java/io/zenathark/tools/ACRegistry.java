@@ -0,0 +1,95 @@
+package io.zenathark.tools;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Registry of immutable Aho-Corasick automata shared by many scanner threads.
+ *
+ * <p>Each name maps to the current version of a dictionary. Publishing and removing
+ * a version are atomic updates of the map entry, so a publish racing with a remove
+ * is either seen by later readers or removed, never lost on a detached entry.
+ * Readers get the current version with a lock free read, so scanners never block
+ * while dictionaries are being replaced. A scan started with a version keeps using
+ * it until it ends, even if a new version is published meanwhile.
+ *
+ * <p>New versions are usually built by a single writer with {@link AhoCorasickTree}
+ * and published with {@link AhoCorasickTree#freeze()}.
+ */
+public class ACRegistry {
+  private final ConcurrentHashMap<String, DoubleArrayACTree> automata =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current version of a dictionary.
+   *
+   * @param name dictionary name
+   * @return the automaton, null if nothing was published with that name
+   */
+  public DoubleArrayACTree get(String name) {
+    return automata.get(name);
+  }
+
+  /**
+   * Publishes a new version of a dictionary.
+   *
+   * @param name dictionary name
+   * @param automaton new version
+   * @return the previous version, null if there was none
+   */
+  public DoubleArrayACTree publish(String name, DoubleArrayACTree automaton) {
+    if (automaton == null)
+      throw new IllegalArgumentException(String.format("Null automaton for: %s", name));
+    return automata.put(name, automaton);
+  }
+
+  /**
+   * Publishes a new version only if the current one is still <tt>expected</tt>, so
+   * concurrent writers do not overwrite each other.
+   *
+   * @param name dictionary name
+   * @param expected version the new one was built from, null if there was none
+   * @param automaton new version
+   * @return true if the new version was published
+   */
+  public boolean publish(String name, DoubleArrayACTree expected, DoubleArrayACTree automaton) {
+    if (automaton == null)
+      throw new IllegalArgumentException(String.format("Null automaton for: %s", name));
+    // Automata do not override equals, so replace compares versions by identity
+    if (expected == null)
+      return automata.putIfAbsent(name, automaton) == null;
+    return automata.replace(name, expected, automaton);
+  }
+
+  /**
+   * Removes a dictionary. Scans running with it are not affected.
+   *
+   * @param name dictionary name
+   * @return the removed version, null if there was none
+   */
+  public DoubleArrayACTree remove(String name) {
+    return automata.remove(name);
+  }
+
+  /** Names of the published dictionaries. */
+  public Set<String> names() {
+    return Collections.unmodifiableSet(automata.keySet());
+  }
+
+  /**
+   * Scans a slice of a text with the current version of a dictionary.
+   *
+   * @param name dictionary name
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   * @return false if nothing was published with that name
+   */
+  public boolean scan(String name, char[] text, int from, int to, MatchHandler handler) {
+    DoubleArrayACTree automaton = get(name);
+    if (automaton == null) return false;
+    automaton.scan(text, from, to, handler);
+    return true;
+  }
+}
@@ -1,3 +1,5 @@
+package io.zenathark.tools;
+
 import java.io.*;
 import java.util.*;
 import java.text.*;
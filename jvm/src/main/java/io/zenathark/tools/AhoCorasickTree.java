@@ -1,3 +1,5 @@
+package io.zenathark.tools;
+
 import java.io.*;
 import java.util.*;
 import java.text.*;
@@ -9,28 +11,52 @@ interface StateFn extends Supplier<StateFn> {}
     /** Aho-Corasick Node Three.
 	Recursive Structure that represents an Aho-Cotasick Tree.
      */
-class AhoCorasickTree {
+public class AhoCorasickTree {
     //--Trie
     HashMap<Character, AhoCorasickTree> childs;
     Optional<Character> chr;           // Content of the node
     boolean isEnd;                     // isEnd stores the index of the word that makes it final.
     String word;                       // Stores the matching word
+    int id;                            // Index of the word, in insertion order
+    int[] sharedIds;                   // Other pattern ids ending on this node, null if none
+    long payload;                      // Payload of the word
     Optional<AhoCorasickTree> parent;  // Double link for easy navigation
     //--AhoCorasick extra links
     Optional<AhoCorasickTree> fall;    // AC connection
+    Optional<AhoCorasickTree> output;  // Nearest final node on the fail chain
+    HashMap<Character, HashSet<AhoCorasickTree>> fallers; // Nodes whose fail link points here, by character. null if none
     boolean isCompiled;
+    int size;                          // Number of words, only kept by the root
+    volatile DoubleArrayACTree automaton; // Frozen automaton used by scan, only kept by the root
+    char[] fold;                       // Folding table of the words, null if none. Only kept by the root
+    char[] inputMap;                   // Input character map, null if none. Only kept by the root
+    ArrayList<CharPattern> patterns;   // Patterns, null if none. Only kept by the root
+    boolean expanded;                  // True while the patterns are expanded on the trie
 
     public AhoCorasickTree() {
 	this(null, null);
     }
 
+    /** Creates the root of a case and/or accent insensitive tree.
+	Words are folded when they are added, and the input characters are mapped
+	through a folding table while scanning, so the input is never copied.
+     */
+    public AhoCorasickTree(boolean ignoreCase, boolean ignoreAccents) {
+	this(null, null);
+	fold = CharFolding.table(ignoreCase, ignoreAccents);
+	inputMap = fold;
+    }
+
     public AhoCorasickTree(Character chr, AhoCorasickTree parent) {
 	this.chr = Optional.ofNullable(chr);
 	this.parent = Optional.ofNullable(parent);
 	childs = new HashMap<>();
 	isEnd = false;
 	fall = Optional.of(this);
+	output = Optional.empty();
 	isCompiled = false;
+	id = -1;
+	size = 0;
     }
 
     public AhoCorasickTree addWord(String word) {
@@ -42,27 +68,354 @@ class AhoCorasickTree {
     }
 
     public AhoCorasickTree addWord(Character[] word) {
+	return addWord(word, 0);
+    }
+
+    public AhoCorasickTree addWord(String word, long payload) {
+	return addWord(toObject(word.toCharArray()), payload);
+    }
+
+    /** Adds a word to the trie.
+	The payload is returned along with every match of the word by
+	scan(char[], int, int, PayloadMatchHandler); adding a word again replaces it.
+	If the trie is already compiled, only the links affected by the new nodes
+	are repaired, instead of running compile() again.
+     */
+    public synchronized AhoCorasickTree addWord(Character[] word, long payload) {
 	String s = new String(toPrimitive(word));
+	if (expanded)
+	    stripPatterns();
 	AhoCorasickTree currentNode = this;
 	AhoCorasickTree nextNode = null;
 	for (Character e: word) {
+	    if (fold != null)
+		e = fold[e];
 	    nextNode = currentNode.childs.get(e);
 	    if (nextNode == null) {
 		nextNode = new AhoCorasickTree(e, currentNode);
 		currentNode.childs.put(e, nextNode);
+		if (isCompiled)
+		    linkNode(nextNode);
 	    }
 	    currentNode = nextNode;
 	}
-	currentNode.isEnd = true;
+	if (!currentNode.isEnd) {
+	    currentNode.id = size++;
+	    currentNode.isEnd = true;
+	    if (isCompiled)
+		repairOutputs(currentNode);
+	}
 	currentNode.word = s;
+	currentNode.payload = payload;
+	automaton = null;
+	return this;
+    }
+
+    public AhoCorasickTree removeWord(String word) {
+	return removeWord(word.toCharArray());
+    }
+
+    /** Removes a word from the trie.
+	Nodes that are no longer part of any word are pruned. If the trie is
+	compiled, the links pointing to them are moved to their fail node and the
+	output links of the affected nodes are repaired. The id of the removed
+	word is not reused.
+     */
+    public synchronized AhoCorasickTree removeWord(char[] word) {
+	if (expanded)
+	    stripPatterns();
+	AhoCorasickTree currentNode = this;
+	for (char e: word) {
+	    if (fold != null)
+		e = fold[e];
+	    currentNode = currentNode.childs.get(e);
+	    if (currentNode == null)
+		return this;
+	}
+	if (!currentNode.isEnd || currentNode.isRoot())
+	    return this;
+	currentNode.isEnd = false;
+	currentNode.word = null;
+	currentNode.id = -1;
+	currentNode.payload = 0;
+	if (isCompiled)
+	    repairOutputs(currentNode);
+	while (!currentNode.isRoot() && !currentNode.isEnd && currentNode.childs.isEmpty()) {
+	    AhoCorasickTree parent = currentNode.parent.get();
+	    parent.childs.remove(currentNode.chr.get());
+	    if (isCompiled)
+		unlinkNode(currentNode);
+	    currentNode = parent;
+	}
+	automaton = null;
+	return this;
+    }
+
+    /** Adds a pattern to the dictionary.
+	The pattern syntax is described on {@link CharPattern}: <tt>?</tt> matches any
+	character, <tt>[...]</tt> a class of characters and <tt>{n,m}</tt> a bounded
+	repeat of the previous atom. The pattern takes the next word id.
+	<p>On compile(), characters that no word nor pattern can tell apart are merged
+	into a class, and every string the pattern matches over the classes is added to
+	the trie, so scanning costs the same as for literal words. Adding or removing
+	words afterwards runs a full compile() instead of repairing the links.
+	The iterator reports a single word per node, use scan() to get every pattern.
+	<p>A pattern must expand to at most CharPattern.MAX_EXPANSIONS strings over the
+	classes of the current dictionary, which is checked here before the trie is
+	touched. Words added later split the classes further and can push a pattern
+	over the limit: then compile(), and freeze() and scan() that compile on demand,
+	throw IllegalArgumentException and leave the trie without the expansions, so
+	the tree stays usable once the word or the pattern is removed.
+	@throws IllegalArgumentException if the pattern is malformed, can match the
+	empty string or expands to too many strings
+     */
+    public AhoCorasickTree addPattern(String pattern) {
+	return addPattern(pattern, 0);
+    }
+
+    public synchronized AhoCorasickTree addPattern(String pattern, long payload) {
+	CharPattern p = new CharPattern(pattern, size, payload, fold);
+	if (expanded)
+	    stripPatterns();
+	if (patterns == null)
+	    patterns = new ArrayList<>();
+	patterns.add(p);
+	try {
+	    checkPatterns();
+	} catch (IllegalArgumentException e) {
+	    patterns.remove(patterns.size() - 1);
+	    if (patterns.isEmpty())
+		patterns = null;
+	    throw e;
+	}
+	size++;
 	isCompiled = false;
+	automaton = null;
 	return this;
     }
 
-    public AhoCorasickTree compile() {
+    /** Removes every pattern added with the given source.
+	The ids of the removed patterns are not reused. Nothing changes if there is
+	no such pattern.
+     */
+    public synchronized AhoCorasickTree removePattern(String pattern) {
+	if (patterns == null || patterns.stream().noneMatch(p -> p.source.equals(pattern)))
+	    return this;
+	if (expanded)
+	    stripPatterns();
+	patterns.removeIf(p -> p.source.equals(pattern));
+	if (patterns.isEmpty())
+	    patterns = null;
+	isCompiled = false;
+	automaton = null;
+	return this;
+    }
+
+    // Removes the strings of the patterns from the trie, and the nodes left empty
+    private void stripPatterns() {
+	BitSet ids = new BitSet(size);
+	for (CharPattern p: patterns)
+	    ids.set(p.id);
+	ArrayList<AhoCorasickTree> nodes = new ArrayList<>();
+	nodes.add(this);
+	for (int i = 0; i < nodes.size(); i++)
+	    nodes.addAll(nodes.get(i).childs.values());
+	// Children always come after their parent
+	for (int i = nodes.size() - 1; i > 0; i--) {
+	    AhoCorasickTree node = nodes.get(i);
+	    node.sharedIds = null;
+	    if (node.isEnd && ids.get(node.id)) {
+		node.isEnd = false;
+		node.id = -1;
+		node.word = null;
+	    }
+	    if (!node.isEnd && node.childs.isEmpty())
+		node.parent.get().childs.remove(node.chr.get());
+	}
+	inputMap = fold;
+	expanded = false;
+	isCompiled = false;
+    }
+
+    // Adds the strings matched by every pattern over the class representatives. If the
+    // expansion fails the trie is left without any of them
+    private void expandPatterns() {
+	char[] representative = checkPatterns();
+	try {
+	    inputMap = new char[CharPattern.ALPHABET];
+	    for (int c = 0; c < CharPattern.ALPHABET; c++)
+		inputMap[c] = representative[fold == null ? c : fold[c]];
+	    for (CharPattern p: patterns)
+		p.expand(representative, key -> addExpansion(key, p));
+	    expanded = true;
+	} finally {
+	    if (!expanded)
+		stripPatterns();
+	}
+    }
+
+    // Checks that every pattern fits on MAX_EXPANSIONS over the current classes, the
+    // trie must not hold the expansions. Returns the class representatives
+    private char[] checkPatterns() {
+	char[] representative = representatives();
+	for (CharPattern p: patterns)
+	    p.checkExpansions(representative);
+	return representative;
+    }
+
+    // Splits the characters into classes that no word nor pattern can tell apart
+    private char[] representatives() {
+	BitSet literal = new BitSet(CharPattern.ALPHABET);
+	ArrayDeque<AhoCorasickTree> stack = new ArrayDeque<>();
+	stack.push(this);
+	while (!stack.isEmpty()) {
+	    AhoCorasickTree currentNode = stack.pop();
+	    for (AhoCorasickTree e: currentNode.childs.values()) {
+		literal.set(e.chr.get());
+		stack.push(e);
+	    }
+	}
+	LinkedHashSet<BitSet> distinct = new LinkedHashSet<>();
+	for (CharPattern p: patterns)
+	    distinct.addAll(Arrays.asList(p.sets));
+	BitSet[] sets = distinct.toArray(new BitSet[0]);
+	// Literal characters are classes on their own, the representative of a class
+	// is its first character
+	char[] representative = new char[CharPattern.ALPHABET];
+	HashMap<BitSet, Character> classes = new HashMap<>();
+	for (int c = 0; c < CharPattern.ALPHABET; c++) {
+	    representative[c] = (char) c;
+	    if (literal.get(c))
+		continue;
+	    BitSet signature = new BitSet(sets.length);
+	    for (int j = 0; j < sets.length; j++)
+		if (sets[j].get(c))
+		    signature.set(j);
+	    Character r = classes.putIfAbsent(signature, (char) c);
+	    if (r != null)
+		representative[c] = r;
+	}
+	return representative;
+    }
+
+    private void addExpansion(char[] key, CharPattern p) {
+	AhoCorasickTree currentNode = this;
+	for (char e: key) {
+	    AhoCorasickTree nextNode = currentNode.childs.get(e);
+	    if (nextNode == null) {
+		nextNode = new AhoCorasickTree(e, currentNode);
+		currentNode.childs.put(e, nextNode);
+	    }
+	    currentNode = nextNode;
+	}
+	if (!currentNode.isEnd) {
+	    currentNode.isEnd = true;
+	    currentNode.id = p.id;
+	    currentNode.word = p.source;
+	} else if (currentNode.id != p.id) {
+	    int[] shared = currentNode.sharedIds;
+	    if (shared == null) {
+		currentNode.sharedIds = new int[] {p.id};
+	    } else if (shared[shared.length - 1] != p.id) {
+		// Patterns are expanded in id order, so a repeated id is always the last one
+		shared = Arrays.copyOf(shared, shared.length + 1);
+		shared[shared.length - 1] = p.id;
+		currentNode.sharedIds = shared;
+	    }
+	}
+    }
+
+    // Computes the links of a new leaf. Nodes that failed to the fail node of the leaf
+    // and have the leaf string as suffix now fail to the leaf. Only the fallers with
+    // the character of the leaf are candidates, so a leaf under the root does not
+    // visit every node failing to the root.
+    private void linkNode(AhoCorasickTree node) {
+	AhoCorasickTree parent = node.parent.get();
+	Character chr = node.chr.get();
+	AhoCorasickTree fall = this;
+	if (!parent.isRoot()) {
+	    fall = parent.fall.get();
+	    while (fall.childs.get(chr) == null && !fall.isRoot())
+		fall = fall.fall.get();
+	    fall = fall.childs.getOrDefault(chr, this);
+	}
+	node.fall = Optional.of(fall);
+	node.output = fall.isFinal() ? Optional.of(fall) : fall.output;
+	HashSet<AhoCorasickTree> candidates = fall.fallers == null ? null : fall.fallers.get(chr);
+	if (candidates != null) {
+	    Iterator<AhoCorasickTree> it = candidates.iterator();
+	    while (it.hasNext()) {
+		AhoCorasickTree e = it.next();
+		if (hasSuffix(e.parent.get(), parent)) {
+		    it.remove();
+		    e.fall = Optional.of(node);
+		    addFaller(node, e);
+		}
+	    }
+	    if (candidates.isEmpty())
+		fall.fallers.remove(chr);
+	    // Their output links do not change until the new node becomes final
+	}
+	addFaller(fall, node);
+    }
+
+    // Detaches a pruned node, its fallers fail to its own fail node.
+    private void unlinkNode(AhoCorasickTree node) {
+	AhoCorasickTree fall = node.fall.get();
+	Character chr = node.chr.get();
+	HashSet<AhoCorasickTree> siblings = fall.fallers.get(chr);
+	siblings.remove(node);
+	if (siblings.isEmpty())
+	    fall.fallers.remove(chr);
+	if (node.fallers != null)
+	    for (HashSet<AhoCorasickTree> group: node.fallers.values())
+		for (AhoCorasickTree e: group) {
+		    e.fall = Optional.of(fall);
+		    addFaller(fall, e);
+		}
+	node.fallers = null;
+    }
+
+    // True if the string of suffix is a suffix of the string of node
+    private static boolean hasSuffix(AhoCorasickTree node, AhoCorasickTree suffix) {
+	while (node != suffix && !node.isRoot())
+	    node = node.fall.get();
+	return node == suffix;
+    }
+
+    private static void addFaller(AhoCorasickTree node, AhoCorasickTree faller) {
+	if (node.fallers == null)
+	    node.fallers = new HashMap<>();
+	node.fallers.computeIfAbsent(faller.chr.get(), c -> new HashSet<>()).add(faller);
+    }
+
+    // Updates the output links of the nodes failing to node, and of the nodes failing
+    // to them while they are not final.
+    private static void repairOutputs(AhoCorasickTree node) {
+	ArrayDeque<AhoCorasickTree> stack = new ArrayDeque<>();
+	stack.push(node);
+	while (!stack.isEmpty()) {
+	    AhoCorasickTree currentNode = stack.pop();
+	    if (currentNode.fallers == null)
+		continue;
+	    Optional<AhoCorasickTree> output =
+		currentNode.isFinal() ? Optional.of(currentNode) : currentNode.output;
+	    for (HashSet<AhoCorasickTree> group: currentNode.fallers.values())
+		for (AhoCorasickTree e: group) {
+		    e.output = output;
+		    if (!e.isFinal())
+			stack.push(e);
+		}
+	}
+    }
+
+    public synchronized AhoCorasickTree compile() {
+	if (patterns != null && !expanded)
+	    expandPatterns();
 	ArrayDeque<AhoCorasickTree> queue = new ArrayDeque<>();
 	for (AhoCorasickTree e: this.childs.values())
 	    queue.push(e);
+	clearFallers(this);
 	AhoCorasickTree currentNode = null;
 	while (!queue.isEmpty()) {
 	    currentNode = queue.pop();
@@ -77,11 +430,38 @@ class AhoCorasickTree {
 		currentNode.fall = Optional.of(this);
 	    if (currentNode == currentNode.fall.get())
 		currentNode.fall = Optional.of(this);
+	    fall = currentNode.fall.get();
+	    currentNode.output = fall.isFinal() ? Optional.of(fall) : fall.output;
+	    addFaller(fall, currentNode);
 	}
 	isCompiled = true;
 	return this;
     }
 
+    private static void clearFallers(AhoCorasickTree root) {
+	ArrayDeque<AhoCorasickTree> stack = new ArrayDeque<>();
+	stack.push(root);
+	while (!stack.isEmpty()) {
+	    AhoCorasickTree currentNode = stack.pop();
+	    currentNode.fallers = null;
+	    for (AhoCorasickTree e: currentNode.childs.values())
+		stack.push(e);
+	}
+    }
+
+    /** Freezes the trie into an immutable double-array automaton.
+	The trie is compiled first if needed. Later changes to the trie are
+	not reflected on the returned automaton, so it works as a copy-on-write
+	snapshot: a writer can keep adding and removing words, which only repairs
+	the affected links, and publish a new snapshot while scanners keep using
+	the previous one.
+     */
+    public synchronized DoubleArrayACTree freeze() {
+	if (!isCompiled)
+	    this.compile();
+	return new DoubleArrayACTree(this);
+    }
+
     public boolean isRoot() {
 	return !this.parent.isPresent();
     }
@@ -116,13 +496,77 @@ class AhoCorasickTree {
 	return result;
     }
 
+    /** Returns the word of a pattern id. */
+    public String word(int id) {
+	return scanner().word(id);
+    }
+
+    /** Reports all the (overlapping) occurrences of the dictionary on a text.
+	Characters are not boxed and no object is created per match, the scan runs
+	over the automaton returned by freeze(), which is cached until a new word
+	is added. Several threads can scan at once, but words must not be added or
+	removed meanwhile; use snapshots from freeze() and an ACRegistry for that.
+     */
+    public void scan(char[] text, int from, int to, MatchHandler handler) {
+	scanner().scan(text, from, to, handler);
+    }
+
+    public void scan(CharSequence text, MatchHandler handler) {
+	scanner().scan(text, handler);
+    }
+
+    /** Reports all the (overlapping) occurrences of the dictionary on a text, along
+	with the payload given to the matched word.
+     */
+    public void scan(char[] text, int from, int to, PayloadMatchHandler handler) {
+	scanner().scan(text, from, to, handler);
+    }
+
+    /** Scans a batch of documents into a reusable buffer.
+	@see DoubleArrayACTree#scan(CharSequence[], int, int, BatchMatchList)
+     */
+    public BatchMatchList scan(CharSequence[] docs, BatchMatchList matches) {
+	return scanner().scan(docs, 0, docs.length, matches);
+    }
+
+    /** Returns the payload of a pattern id. */
+    public long payload(int id) {
+	return scanner().payload(id);
+    }
+
+    /** Reports the occurrences of the dictionary following a match mode.
+	@see DoubleArrayACTree#scan(char[], int, int, MatchMode, MatchHandler)
+     */
+    public void scan(char[] text, int from, int to, MatchMode mode, MatchHandler handler) {
+	scanner().scan(text, from, to, mode, handler);
+    }
+
+    public void scan(CharSequence text, MatchMode mode, MatchHandler handler) {
+	scanner().scan(text, mode, handler);
+    }
+
+    // Many threads can scan at once, the automaton is frozen only once
+    private DoubleArrayACTree scanner() {
+	DoubleArrayACTree ans = automaton;
+	if (ans == null) {
+	    synchronized (this) {
+		ans = automaton;
+		if (ans == null)
+		    automaton = ans = freeze();
+	    }
+	}
+	return ans;
+    }
+
     public Iterator<String> iterator(String input) {
 	return iterator(toObject(input.toCharArray()));
     }
 
     public Iterator<String> iterator(Character[] input) {
-	if (!isCompiled)
-	    this.compile();
+	synchronized (this) {
+	    if (!isCompiled)
+		this.compile();
+	}
 	return new AhoCorasickTokenizer(input, this);
     }
 
@@ -145,6 +589,8 @@ class AhoCorasickTree {
 	    AhoCorasickTree currentNode = this.currentNode;
 	    while (++this.pos < this.input.length) {
 		e = (this.input)[pos];
+		if (this.root.inputMap != null)
+		    e = this.root.inputMap[e];
 		while (currentNode.childs.get(e) == null && !currentNode.isRoot())
 		    currentNode = currentNode.fall.get();
 		if (currentNode.isRoot()) {
@@ -153,9 +599,10 @@ class AhoCorasickTree {
 		} else
 		    currentNode = currentNode.childs.get(e);
 		this.currentNode = currentNode;
-		if (currentNode.isFinal()) {
-		    this.tempNode = currentNode;
-		    this.lastToken = currentNode.word;
+		AhoCorasickTree token = currentNode.isFinal() ? currentNode : currentNode.output.orElse(null);
+		if (token != null) {
+		    this.tempNode = token;
+		    this.lastToken = token.word;
 		    return this.onTokenState;
 		}
 	    }
@@ -163,9 +610,10 @@ class AhoCorasickTree {
 	    return this.finalState;
 	};
 
+	// Follows the output links, so only final nodes are visited
 	final StateFn onTokenState = () -> {
-		this.tempNode = this.tempNode.fall.get();
-		if (this.tempNode.isFinal()) {
+		if (this.tempNode.output.isPresent()) {
+		    this.tempNode = this.tempNode.output.get();
 		    this.lastToken = tempNode.word;
 		    return this.onTokenState;
 		}
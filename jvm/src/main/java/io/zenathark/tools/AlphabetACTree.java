@@ -0,0 +1,333 @@
+package io.zenathark.tools;
+
+import java.io.*;
+import java.util.*;
+import java.text.*;
+import java.math.*;
+import java.util.regex.*;
+import java.util.function.*;
+
+/**
+ * Aho-Corasick Tree over the whole UTF-16 range.
+ *
+ * <p>Works as {@link FastACTree} but children are kept on small arrays sorted by
+ * character, so a node only pays for the children it has. On {@link #compile()} the
+ * alphabet of the dictionary is collected into a table that maps each character to a
+ * dense class (0 for characters outside the dictionary) and the trie is flattened into
+ * int arrays. By default a state keeps only its own transitions, sorted by class, so
+ * the automaton takes one entry per edge. On deterministic mode the fail links are
+ * folded into a complete transition table of <tt>states * (classes + 1)</tt> ints.
+ */
+public class AlphabetACTree {
+  static final int ROOT = 0;
+  static final AlphabetACTree[] NO_CHILDS = {};
+  static final char[] NO_KEYS = {};
+  /** Largest transition table of the deterministic mode, as VMs cap array lengths */
+  static final long MAX_TABLE = Integer.MAX_VALUE - 8;
+
+  //Trie
+  char[]           keys   = NO_KEYS;
+  AlphabetACTree[] childs = NO_CHILDS;
+  int              degree;
+  final AlphabetACTree parent;
+
+  char           chr;
+  boolean        isEnd;
+  String         word;
+  int            id;      // index of the word, in insertion order
+  AlphabetACTree fall;
+
+  private int     size;
+  private boolean isCompiled;
+
+  //Compiled automaton, only kept by the root
+  char[]   classes;
+  int      width;
+  int[]    delta;   // complete transition table, only on deterministic mode
+  int[]    first;   // transitions of state s are first[s] .. first[s + 1] - 1, null on deterministic mode
+  char[]   edges;   // class of every transition, sorted per state
+  int[]    targets; // target state of every transition
+  int[]    fail;
+  int[]    link;
+  /** Pattern id of a final state, -1 otherwise */
+  int[]    output;
+  /** Pattern table indexed by pattern id */
+  String[] words;
+  int[]    lengths;
+  boolean  deterministic;
+  char[]   fold;    // input character map, null if none
+
+  public AlphabetACTree() {
+    this((char) 0, null);
+  }
+
+  // Root of a case and/or accent insensitive Trie, words are folded when added and
+  // the folding is merged into the class table on compile
+  public AlphabetACTree(boolean ignoreCase, boolean ignoreAccents) {
+    this((char) 0, null);
+    this.fold = CharFolding.table(ignoreCase, ignoreAccents);
+  }
+
+  public AlphabetACTree(char chr, AlphabetACTree parent) {
+    this.chr        = chr;
+    this.parent     = parent;
+    this.isEnd      = false;
+    this.fall       = this;
+    this.isCompiled = false;
+    this.id         = -1;
+  }
+
+  // returns a child marked with the chr, null if there is no path
+  public AlphabetACTree getChild(char chr) {
+    int i = indexOf(chr);
+    return i >= 0 ? childs[i] : null;
+  }
+
+  // adds a child marked with the chr, keeping the children sorted
+  public AlphabetACTree putChild(AlphabetACTree nNode) {
+    int i = indexOf(nNode.chr);
+    if (i >= 0) {
+      childs[i] = nNode;
+      return this;
+    }
+    i = -(i + 1);
+    if (degree == keys.length) {
+      int len = degree == 0 ? 2 : degree * 2;
+      keys   = Arrays.copyOf(keys, len);
+      childs = Arrays.copyOf(childs, len);
+    }
+    System.arraycopy(keys, i, keys, i + 1, degree - i);
+    System.arraycopy(childs, i, childs, i + 1, degree - i);
+    keys[i]   = nNode.chr;
+    childs[i] = nNode;
+    degree++;
+    return this;
+  }
+
+  private int indexOf(char chr) {
+    return Arrays.binarySearch(keys, 0, degree, chr);
+  }
+
+  // Split a string into chars and all addWord on it
+  public AlphabetACTree addWord(String word) {
+    return addWord(word.toCharArray());
+  }
+
+  // Adds a new word onto the Trie
+  public AlphabetACTree addWord(char[] word) {
+    String w = new String(word);
+    AlphabetACTree currentNode = this;
+    AlphabetACTree nextNode = null;
+    for (char e: word) {
+      if (fold != null) e = fold[e];
+      nextNode = currentNode.getChild(e);
+      if (nextNode == null) {
+        nextNode = new AlphabetACTree(e, currentNode);
+        currentNode.putChild(nextNode);
+      }
+      currentNode = nextNode;
+    }
+    if (!currentNode.isEnd)
+      currentNode.id = size++;
+    currentNode.isEnd = true;
+    currentNode.word  = w;
+    isCompiled = false;
+    return this;
+  }
+
+  public boolean isRoot() {
+    return this.parent == null;
+  }
+
+  public boolean isFinal() {
+    return this.isEnd;
+  }
+
+  public boolean isCompiled() {
+    return this.isCompiled;
+  }
+
+  public AlphabetACTree compile() {
+    return compile(false);
+  }
+
+  /**
+   * Computes the fail links and flattens the Trie.
+   *
+   * @param deterministic if true, fail links are folded into a complete transition
+   *   table so every input character costs exactly one array load, at the price of
+   *   <tt>classes + 1</tt> ints per state. Otherwise only the edges of the Trie are
+   *   kept and a transition is a binary search over the edges of the state, following
+   *   fail links on a miss. If the complete table would not fit on an array, the
+   *   sparse mode is used anyway, see {@link #isDeterministic()}.
+   */
+  public AlphabetACTree compile(boolean deterministic) {
+    // BFS numbering of the states and fail links
+    ArrayList<AlphabetACTree> nodes = new ArrayList<>();
+    nodes.add(this);
+    this.fall = this;
+    char maxChar = 0;
+    for (int i = 0; i < nodes.size(); i++) {
+      AlphabetACTree currentNode = nodes.get(i);
+      for (int j = 0; j < currentNode.degree; j++) {
+        AlphabetACTree child = currentNode.childs[j];
+        nodes.add(child);
+        if (child.chr > maxChar) maxChar = child.chr;
+        if (currentNode.isRoot()) {
+          child.fall = this;
+          continue;
+        }
+        AlphabetACTree fall = currentNode.fall;
+        while (fall.getChild(child.chr) == null && !fall.isRoot())
+          fall = fall.fall;
+        child.fall = fall.getChild(child.chr);
+        if (child.fall == null)
+          child.fall = this;
+      }
+    }
+
+    // Dense classes for the characters of the dictionary
+    boolean[] used = new boolean[maxChar + 1];
+    for (int i = 1; i < nodes.size(); i++)
+      used[nodes.get(i).chr] = true;
+    classes = new char[nodes.size() > 1 ? maxChar + 1 : 0];
+    char nClasses = 0;
+    for (int c = 0; c < classes.length; c++)
+      if (used[c]) classes[c] = ++nClasses;
+    width = nClasses + 1;
+    char[] alphabetClasses = classes;
+    if (fold != null)
+      classes = CharFolding.apply(fold, alphabetClasses);
+
+    IdentityHashMap<AlphabetACTree, Integer> ids = new IdentityHashMap<>();
+    for (int i = 0; i < nodes.size(); i++)
+      ids.put(nodes.get(i), i);
+    fail  = new int[nodes.size()];
+    link  = new int[nodes.size()];
+    output  = new int[nodes.size()];
+    words   = new String[size];
+    lengths = new int[size];
+    Arrays.fill(output, -1);
+    // Edges on BFS order, classes follow the character order so every state keeps
+    // its edges sorted
+    first   = new int[nodes.size() + 1];
+    edges   = new char[nodes.size() - 1];
+    targets = new int[nodes.size() - 1];
+    int e = 0;
+    for (int i = 0; i < nodes.size(); i++) {
+      AlphabetACTree node = nodes.get(i);
+      first[i] = e;
+      for (int j = 0; j < node.degree; j++) {
+        edges[e] = alphabetClasses[node.keys[j]];
+        targets[e++] = ids.get(node.childs[j]);
+      }
+      if (i == ROOT) continue;
+      int f = ids.get(node.fall);
+      fail[i] = f;
+      link[i] = output[f] >= 0 ? f : link[f];
+      if (node.isEnd) {
+        output[i] = node.id;
+        words[node.id] = node.word;
+        lengths[node.id] = node.word.length();
+      }
+    }
+    first[nodes.size()] = e;
+    delta = null;
+    // The table size overflows an int on large dictionaries with wide alphabets
+    deterministic &= (long) nodes.size() * width <= MAX_TABLE;
+    if (deterministic) {
+      delta = new int[nodes.size() * width];
+      // BFS order guarantees the row of the fail state is already complete
+      for (int i = 0; i < nodes.size(); i++) {
+        for (int c = 0; c < width; c++)
+          delta[i * width + c] = i == ROOT ? ROOT : delta[fail[i] * width + c];
+        for (int k = first[i]; k < first[i + 1]; k++)
+          delta[i * width + edges[k]] = targets[k];
+      }
+      first = null;
+      edges = null;
+      targets = null;
+    }
+    this.deterministic = deterministic;
+    isCompiled = true;
+    return this;
+  }
+
+  /** True if the compiled automaton uses the complete transition table */
+  public boolean isDeterministic() {
+    return deterministic;
+  }
+
+  /** Class of a character, 0 if it is not part of the alphabet */
+  public int classOf(char chr) {
+    return chr < classes.length ? classes[chr] : 0;
+  }
+
+  /**
+   * Moves the compiled automaton one character.
+   *
+   * @param state current state
+   * @param chr next input character
+   * @return the next state, following fail links if needed
+   */
+  public int next(int state, char chr) {
+    int c = chr < classes.length ? classes[chr] : 0;
+    if (deterministic) return delta[state * width + c];
+    if (c == 0) return ROOT;
+    while (true) {
+      int k = Arrays.binarySearch(edges, first[state], first[state + 1], (char) c);
+      if (k >= 0) return targets[k];
+      if (state == ROOT) return ROOT;
+      state = fail[state];
+    }
+  }
+
+  /**
+   * Counts all the (overlapping) occurrences of the dictionary on a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @return number of matches
+   */
+  public int count(char[] text, int from, int to) {
+    if (!isCompiled)
+      compile();
+    int state = ROOT;
+    int matches = 0;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t]) matches++;
+    }
+    return matches;
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, MatchHandler handler) {
+    if (!isCompiled)
+      compile();
+    int state = ROOT;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        handler.onMatch(output[t], i + 1 - lengths[output[t]], i + 1);
+    }
+  }
+
+  /** Returns the word of a pattern id, the tree must be compiled */
+  public String word(int id) {
+    return words[id];
+  }
+
+  @Override
+  public String toString() {
+    return String.format("[Root = %b\n Char = %c\n Parent chr = %c]", isEnd, chr, parent.chr);
+  }
+}
@@ -0,0 +1,108 @@
+package io.zenathark.tools;
+
+import java.util.*;
+
+/**
+ * Growable buffer of the matches of a batch of documents, stored as primitive
+ * quadruples.
+ *
+ * <p><tt>data[4 * i]</tt> holds the document id, <tt>data[4 * i + 1]</tt> the pattern
+ * id, <tt>data[4 * i + 2]</tt> the start and <tt>data[4 * i + 3]</tt> the end of the
+ * <tt>i</tt>-th match. Positions are relative to the beginning of each document.
+ * Matches are grouped by document, the matches of the <tt>k</tt>-th document of the
+ * batch are those in <tt>[from(k), to(k))</tt>. The buffer is cleared by every batch
+ * scan, so scanning in a loop does not allocate once it has grown.
+ *
+ * @see DoubleArrayACTree#scan(CharSequence[], int, int, BatchMatchList)
+ */
+public class BatchMatchList {
+  static final int STRIDE = 4;
+
+  /** Number of stored matches */
+  public int size;
+  /** Internal storage, see the class description for the layout */
+  public int[] data;
+  /** Number of documents of the last batch */
+  int documents;
+  /** Index of the first match of every document of the batch */
+  int[] bounds;
+
+  public BatchMatchList() {
+    this(16);
+  }
+
+  public BatchMatchList(int capacity) {
+    if (capacity < 0)
+      throw new IllegalArgumentException(String.format("Illegal Capacity: %d", capacity));
+    data = new int[capacity * STRIDE];
+    bounds = new int[16];
+  }
+
+  public void onMatch(int docId, int patternId, int start, int end) {
+    ensureCapacity(size + 1);
+    int i = size++ * STRIDE;
+    data[i] = docId;
+    data[i + 1] = patternId;
+    data[i + 2] = start;
+    data[i + 3] = end;
+  }
+
+  // The following matches belong to the next document of the batch
+  final void beginDocument() {
+    if (documents == bounds.length)
+      bounds = Arrays.copyOf(bounds, documents * 3 / 2 + 1);
+    bounds[documents++] = size;
+  }
+
+  public int docId(int i) {
+    return data[i * STRIDE];
+  }
+
+  public int patternId(int i) {
+    return data[i * STRIDE + 1];
+  }
+
+  public int start(int i) {
+    return data[i * STRIDE + 2];
+  }
+
+  public int end(int i) {
+    return data[i * STRIDE + 3];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Number of documents of the last batch */
+  public int documents() {
+    return documents;
+  }
+
+  /** Index of the first match of the <tt>k</tt>-th document of the batch */
+  public int from(int k) {
+    return bounds[k];
+  }
+
+  /** Index after the last match of the <tt>k</tt>-th document of the batch */
+  public int to(int k) {
+    return k + 1 < documents ? bounds[k + 1] : size;
+  }
+
+  /** Removes all the matches and documents, keeping the storage. */
+  public BatchMatchList clear() {
+    size = 0;
+    documents = 0;
+    return this;
+  }
+
+  final void ensureCapacity(int minCapacity) {
+    int oldCapacity = data.length / STRIDE;
+    if (minCapacity > oldCapacity) {
+      int newCapacity = (oldCapacity * 3) / 2 + 1;
+      if (newCapacity < minCapacity)
+        newCapacity = minCapacity;
+      data = Arrays.copyOf(data, newCapacity * STRIDE);
+    }
+  }
+}
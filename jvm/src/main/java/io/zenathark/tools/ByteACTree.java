@@ -0,0 +1,211 @@
+package io.zenathark.tools;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Immutable Aho-Corasick automaton over the UTF-8 bytes of a dictionary.
+ *
+ * <p>Scanning bytes avoids decoding the input into chars. Every byte value is mapped
+ * to a class (0 for bytes that do not appear on the dictionary) and the complete
+ * transition function is stored on a flat <tt>states * (classes + 1)</tt> table,
+ * so each input byte costs one table lookup and one transition load.
+ *
+ * <p>Buffers are read with absolute gets, so a {@link MappedByteBuffer} is scanned in
+ * place with no copy. Positions reported to the handlers are byte offsets and a
+ * match spans the UTF-8 encoding of its pattern.
+ */
+public final class ByteACTree {
+  static final int ROOT = 0;
+  /** Largest region mapped at once by {@link #scan(FileChannel, StreamMatchHandler)} */
+  static final int MAX_REGION = 1 << 30;
+
+  final byte[] classes = new byte[256];
+  final int width;
+  final int[] delta;
+  /** Pattern id of a final state, -1 otherwise */
+  final int[] output;
+  /** Nearest final state on the fail chain, ROOT if there is none */
+  final int[] link;
+  /** Pattern table indexed by pattern id */
+  final String[] words;
+  /** Length in bytes of every pattern */
+  final int[] lengths;
+
+  public ByteACTree(String... words) {
+    this(Arrays.asList(words));
+  }
+
+  /**
+   * Builds the automaton of a word list. Pattern ids follow the order of the list.
+   *
+   * @param words dictionary
+   */
+  public ByteACTree(Iterable<String> words) {
+    ArrayList<byte[]> encoded = new ArrayList<>();
+    ArrayList<String> patterns = new ArrayList<>();
+    boolean[] used = new boolean[256];
+    for (String w : words) {
+      byte[] bytes = w.getBytes(StandardCharsets.UTF_8);
+      for (byte b : bytes) used[b & 0xff] = true;
+      encoded.add(bytes);
+      patterns.add(w);
+    }
+    int nClasses = 0;
+    for (int b = 0; b < 256; b++)
+      if (used[b]) classes[b] = (byte) ++nClasses;
+    width = nClasses + 1;
+
+    // Trie
+    int[] table = new int[16 * width];
+    int[] out = new int[16];
+    Arrays.fill(table, -1);
+    Arrays.fill(out, -1);
+    int nodes = 1;
+    this.words = new String[encoded.size()];
+    this.lengths = new int[encoded.size()];
+    for (int id = 0; id < encoded.size(); id++) {
+      int s = ROOT;
+      for (byte b : encoded.get(id)) {
+        int c = classes[b & 0xff] & 0xff;
+        if (table[s * width + c] < 0) {
+          if (nodes == out.length) {
+            int len = out.length * 3 / 2 + 1;
+            table = Arrays.copyOf(table, len * width);
+            Arrays.fill(table, out.length * width, table.length, -1);
+            out = Arrays.copyOf(out, len);
+            Arrays.fill(out, nodes, len, -1);
+          }
+          table[s * width + c] = nodes++;
+        }
+        s = table[s * width + c];
+      }
+      if (out[s] < 0) out[s] = id;
+      this.words[id] = patterns.get(id);
+      this.lengths[id] = encoded.get(id).length;
+    }
+
+    // Fail links folded into the table on BFS order
+    int[] fail = new int[nodes];
+    link = new int[nodes];
+    output = Arrays.copyOf(out, nodes);
+    delta = Arrays.copyOf(table, nodes * width);
+    int[] queue = new int[nodes];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < width; c++) {
+      int t = delta[c];
+      if (t < 0) {
+        delta[c] = ROOT;
+      } else {
+        fail[t] = ROOT;
+        queue[tail++] = t;
+      }
+    }
+    while (head < tail) {
+      int s = queue[head++];
+      link[s] = output[fail[s]] >= 0 ? fail[s] : link[fail[s]];
+      for (int c = 0; c < width; c++) {
+        int t = delta[s * width + c];
+        if (t < 0) {
+          delta[s * width + c] = delta[fail[s] * width + c];
+        } else {
+          fail[t] = delta[fail[s] * width + c];
+          queue[tail++] = t;
+        }
+      }
+    }
+  }
+
+  /** Returns the word of a pattern id */
+  public String word(int id) {
+    return words[id];
+  }
+
+  /** Length in bytes of the UTF-8 encoding of a pattern */
+  public int length(int id) {
+    return lengths[id];
+  }
+
+  /** Number of patterns of the automaton */
+  public int size() {
+    return words.length;
+  }
+
+  /**
+   * Moves the automaton one byte.
+   *
+   * @param state current state
+   * @param b next input byte
+   * @return the next state
+   */
+  public int next(int state, byte b) {
+    return delta[state * width + (classes[b & 0xff] & 0xff)];
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of bytes.
+   *
+   * @param bytes input
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match, positions are indexes of <tt>bytes</tt>
+   */
+  public void scan(byte[] bytes, int from, int to, MatchHandler handler) {
+    int s = ROOT;
+    for (int i = from; i < to; i++) {
+      s = delta[s * width + (classes[bytes[i] & 0xff] & 0xff)];
+      for (int t = output[s] >= 0 ? s : link[s]; t != ROOT; t = link[t])
+        handler.onMatch(output[t], i + 1 - lengths[output[t]], i + 1);
+    }
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary between the position
+   * and the limit of a buffer. The buffer position is not modified.
+   *
+   * @param buffer input, usually a {@link MappedByteBuffer}
+   * @param handler receives every match, positions are indexes of <tt>buffer</tt>
+   */
+  public void scan(ByteBuffer buffer, MatchHandler handler) {
+    int s = ROOT;
+    for (int i = buffer.position(), to = buffer.limit(); i < to; i++) {
+      s = delta[s * width + (classes[buffer.get(i) & 0xff] & 0xff)];
+      for (int t = output[s] >= 0 ? s : link[s]; t != ROOT; t = link[t])
+        handler.onMatch(output[t], i + 1 - lengths[output[t]], i + 1);
+    }
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a file. The file
+   * is memory mapped by regions and the automaton state is carried between them, so
+   * files bigger than 2GB are supported. The channel is not closed.
+   *
+   * @param channel input file
+   * @param handler receives every match, positions are byte offsets on the file
+   * @throws IOException if the file cannot be mapped
+   */
+  public void scan(FileChannel channel, StreamMatchHandler handler) throws IOException {
+    scan(channel, handler, MAX_REGION);
+  }
+
+  // Maps regions of the given size, small regions exercise the region boundaries
+  void scan(FileChannel channel, StreamMatchHandler handler, int region) throws IOException {
+    long size = channel.size();
+    int s = ROOT;
+    for (long offset = 0; offset < size; offset += region) {
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(region, size - offset));
+      for (int i = 0, to = buffer.limit(); i < to; i++) {
+        s = delta[s * width + (classes[buffer.get(i) & 0xff] & 0xff)];
+        for (int t = output[s] >= 0 ? s : link[s]; t != ROOT; t = link[t]) {
+          long end = offset + i + 1;
+          handler.onMatch(output[t], end - lengths[output[t]], end);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package io.zenathark.tools;
+
+import java.text.*;
+
+/**
+ * Character folding tables for case and accent insensitive dictionaries.
+ *
+ * <p>A table maps every UTF-16 char to the char it is folded into, so trees fold their
+ * words once when they are added and map input characters with a single array load
+ * while scanning, instead of normalizing a copy of the input. Folding never changes
+ * the length of a text, hence match positions are valid on the original input.
+ *
+ * <p>Tables are built on first use and shared, they must not be modified.
+ */
+final class CharFolding {
+  private CharFolding() {}
+
+  private static class CaseTable {
+    static final char[] TABLE = build(true, false);
+  }
+
+  private static class AccentTable {
+    static final char[] TABLE = build(false, true);
+  }
+
+  private static class CaseAccentTable {
+    static final char[] TABLE = build(true, true);
+  }
+
+  /**
+   * Returns the folding table for the given options, or null if no folding is needed.
+   *
+   * @param ignoreCase fold upper and title case letters into lower case
+   * @param ignoreAccents fold letters with diacritics into their base letter
+   */
+  static char[] table(boolean ignoreCase, boolean ignoreAccents) {
+    if (ignoreCase && ignoreAccents) return CaseAccentTable.TABLE;
+    if (ignoreCase) return CaseTable.TABLE;
+    if (ignoreAccents) return AccentTable.TABLE;
+    return null;
+  }
+
+  /**
+   * Extends a character to code table so every character gets the code of the
+   * character it is folded into.
+   *
+   * @param table folding table
+   * @param codes codes of the folded alphabet, 0 for characters outside of it
+   * @return a new code table, as long as needed to hold the last folded character
+   */
+  static char[] apply(char[] table, char[] codes) {
+    int max = codes.length - 1;
+    for (int c = max + 1; c < table.length; c++)
+      if (table[c] < codes.length && codes[table[c]] != 0) max = c;
+    char[] ans = new char[max + 1];
+    for (int c = 0; c <= max; c++)
+      if (table[c] < codes.length) ans[c] = codes[table[c]];
+    return ans;
+  }
+
+  private static char[] build(boolean ignoreCase, boolean ignoreAccents) {
+    char[] table = new char[Character.MAX_VALUE + 1];
+    for (int c = 0; c <= Character.MAX_VALUE; c++) {
+      char f = (char) c;
+      if (ignoreAccents) f = stripAccent(f);
+      if (ignoreCase) f = Character.toLowerCase(Character.toUpperCase(f));
+      table[c] = f;
+    }
+    // Make the table idempotent so folded words are not folded again
+    for (int c = 0; c <= Character.MAX_VALUE; c++)
+      table[c] = table[table[c]];
+    return table;
+  }
+
+  // Base letter of a char whose canonical decomposition is a letter and combining marks
+  private static char stripAccent(char c) {
+    if (c < 0x80 || Character.isSurrogate(c)) return c;
+    String d = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+    if (d.length() < 2) return c;
+    for (int i = 1; i < d.length(); i++)
+      if (Character.getType(d.charAt(i)) != Character.NON_SPACING_MARK) return c;
+    return d.charAt(0);
+  }
+}
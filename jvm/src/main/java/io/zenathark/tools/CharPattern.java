@@ -0,0 +1,219 @@
+package io.zenathark.tools;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Restricted pattern accepted by {@link AhoCorasickTree#addPattern(String)}.
+ *
+ * <p>A pattern is a sequence of atoms, each one matching a single character:
+ * <ul>
+ *   <li>a literal character, <tt>\</tt> escapes the next character</li>
+ *   <li><tt>?</tt> matches any character</li>
+ *   <li><tt>[...]</tt> matches a class of characters, with ranges as <tt>a-z</tt>
+ *       and negation with a leading <tt>^</tt></li>
+ * </ul>
+ * An atom can be followed by a bounded repeat, <tt>{n}</tt> or <tt>{n,m}</tt>. Since
+ * repeats are bounded, a pattern matches a finite set of strings and it is compiled
+ * by adding each string over the character classes of the dictionary to the trie.
+ */
+final class CharPattern {
+  static final int MAX_REPEAT = 255;
+  static final int MAX_EXPANSIONS = 1 << 16;
+  static final int ALPHABET = Character.MAX_VALUE + 1;
+
+  final String source;
+  final int id;
+  final long payload;
+  /** Characters matched by each atom, after folding */
+  final BitSet[] sets;
+  final int[] min;
+  final int[] max;
+
+  /**
+   * Parses a pattern.
+   *
+   * @param source pattern text
+   * @param id pattern id
+   * @param payload payload of the pattern
+   * @param fold folding table of the dictionary, null if none
+   * @throws IllegalArgumentException if the pattern is malformed or can match the
+   *   empty string
+   */
+  CharPattern(String source, int id, long payload, char[] fold) {
+    this.source = source;
+    this.id = id;
+    this.payload = payload;
+    ArrayList<BitSet> sets = new ArrayList<>();
+    ArrayList<Integer> min = new ArrayList<>();
+    ArrayList<Integer> max = new ArrayList<>();
+    // Input characters are folded before matching, so only the characters the folding
+    // maps to themselves can ever be matched
+    BitSet folded = null;
+    if (fold != null) {
+      folded = new BitSet(ALPHABET);
+      for (int c = 0; c < ALPHABET; c++)
+        if (fold[c] == c) folded.set(c);
+    }
+    int i = 0;
+    while (i < source.length()) {
+      BitSet set = new BitSet(ALPHABET);
+      char c = source.charAt(i++);
+      if (c == '?') {
+        set.set(0, ALPHABET);
+      } else if (c == '[') {
+        i = parseClass(source, i, set, fold);
+      } else {
+        if (c == '\\') c = escaped(source, i++);
+        set.set(fold == null ? c : fold[c]);
+      }
+      int lo = 1;
+      int hi = 1;
+      if (i < source.length() && source.charAt(i) == '{') {
+        int close = source.indexOf('}', i);
+        if (close < 0) throw error(source, "unclosed repeat");
+        String[] bounds = source.substring(i + 1, close).split(",", -1);
+        try {
+          lo = Integer.parseInt(bounds[0].trim());
+          hi = bounds.length == 1 ? lo : Integer.parseInt(bounds[1].trim());
+        } catch (NumberFormatException e) {
+          throw error(source, "bad repeat");
+        }
+        if (bounds.length > 2 || lo < 0 || hi < lo || hi == 0 || hi > MAX_REPEAT)
+          throw error(source, "bad repeat");
+        i = close + 1;
+      }
+      if (folded != null) set.and(folded);
+      if (set.isEmpty()) throw error(source, "empty class");
+      sets.add(set);
+      min.add(lo);
+      max.add(hi);
+    }
+    this.sets = sets.toArray(new BitSet[0]);
+    this.min = new int[min.size()];
+    this.max = new int[max.size()];
+    int minLength = 0;
+    for (int j = 0; j < this.min.length; j++) {
+      this.min[j] = min.get(j);
+      this.max[j] = max.get(j);
+      minLength += this.min[j];
+    }
+    if (minLength == 0) throw error(source, "it can match the empty string");
+  }
+
+  /** Length of the longest string matched by the pattern */
+  int maxLength() {
+    int ans = 0;
+    for (int m : max) ans += m;
+    return ans;
+  }
+
+  // Negation is applied after folding, so [^a] does not match A on a case
+  // insensitive dictionary
+  private static int parseClass(String source, int i, BitSet set, char[] fold) {
+    boolean negated = i < source.length() && source.charAt(i) == '^';
+    if (negated) i++;
+    boolean first = true;
+    while (true) {
+      if (i >= source.length()) throw error(source, "unclosed class");
+      char c = source.charAt(i++);
+      if (c == ']' && !first) break;
+      first = false;
+      if (c == '\\') c = escaped(source, i++);
+      char to = c;
+      if (i + 1 < source.length() && source.charAt(i) == '-' && source.charAt(i + 1) != ']') {
+        to = source.charAt(i + 1);
+        i += 2;
+        if (to == '\\') to = escaped(source, i++);
+        if (to < c) throw error(source, "bad range");
+      }
+      set.set(c, to + 1);
+    }
+    if (fold != null) {
+      BitSet folded = new BitSet(ALPHABET);
+      for (int c = set.nextSetBit(0); c >= 0; c = set.nextSetBit(c + 1))
+        folded.set(fold[c]);
+      set.clear();
+      set.or(folded);
+    }
+    if (negated) set.flip(0, ALPHABET);
+    return i;
+  }
+
+  private static char escaped(String source, int i) {
+    if (i >= source.length()) throw error(source, "trailing escape");
+    return source.charAt(i);
+  }
+
+  private static IllegalArgumentException error(String source, String reason) {
+    return new IllegalArgumentException(String.format("Bad pattern %s: %s", source, reason));
+  }
+
+  /**
+   * Enumerates the strings matched by the pattern over the representatives of the
+   * character classes.
+   *
+   * @param representative class representative of every (folded) character
+   * @param consumer receives every string
+   * @throws IllegalArgumentException if there are more than MAX_EXPANSIONS strings
+   */
+  void expand(char[] representative, Consumer<char[]> consumer) {
+    int[] count = {0};
+    expand(representatives(representative), 0, 0, new char[maxLength()], 0, count, consumer);
+  }
+
+  /**
+   * Checks the number of strings the pattern expands to over the representatives of
+   * the character classes, multiplying the number of classes of the atoms instead of
+   * enumerating the strings.
+   *
+   * @param representative class representative of every (folded) character
+   * @throws IllegalArgumentException if there are more than MAX_EXPANSIONS strings
+   */
+  void checkExpansions(char[] representative) {
+    char[][] reps = representatives(representative);
+    long count = 1;
+    for (int j = 0; j < sets.length; j++) {
+      // Strings of one atom, repeated from min[j] to max[j] times
+      long atom = 0;
+      long power = 1;
+      for (int r = 0; r <= max[j]; r++) {
+        if (r >= min[j]) atom += power;
+        power = Math.min(power * reps[j].length, MAX_EXPANSIONS + 1);
+      }
+      count = Math.min(count * atom, MAX_EXPANSIONS + 1);
+    }
+    if (count > MAX_EXPANSIONS) throw error(source, "too many expansions");
+  }
+
+  // Distinct class representatives matched by every atom, sorted
+  private char[][] representatives(char[] representative) {
+    char[][] reps = new char[sets.length][];
+    for (int j = 0; j < sets.length; j++) {
+      BitSet seen = new BitSet(ALPHABET);
+      for (int c = sets[j].nextSetBit(0); c >= 0; c = sets[j].nextSetBit(c + 1))
+        seen.set(representative[c]);
+      reps[j] = new char[seen.cardinality()];
+      int k = 0;
+      for (int c = seen.nextSetBit(0); c >= 0; c = seen.nextSetBit(c + 1))
+        reps[j][k++] = (char) c;
+    }
+    return reps;
+  }
+
+  private void expand(char[][] reps, int atom, int repeat, char[] key, int length,
+                      int[] count, Consumer<char[]> consumer) {
+    if (atom == sets.length) {
+      if (++count[0] > MAX_EXPANSIONS) throw error(source, "too many expansions");
+      consumer.accept(Arrays.copyOf(key, length));
+      return;
+    }
+    if (repeat >= min[atom])
+      expand(reps, atom + 1, 0, key, length, count, consumer);
+    if (repeat < max[atom])
+      for (char c : reps[atom]) {
+        key[length] = c;
+        expand(reps, atom, repeat + 1, key, length + 1, count, consumer);
+      }
+  }
+}
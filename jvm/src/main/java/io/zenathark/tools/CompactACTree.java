@@ -0,0 +1,216 @@
+package io.zenathark.tools;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick Tree stored as a struct of arrays.
+ *
+ * <p>Works as {@link FastACTree} over the whole UTF-16 range, but nodes are ids on
+ * parallel arrays instead of objects: children are linked from <tt>firstChild</tt>
+ * through <tt>nextSibling</tt>, sorted by character. A node costs one char and six
+ * ints, with no object header nor child array, and building and compiling only walk
+ * primitive arrays. The children of the root are also kept on a dense table on
+ * compile, since the root is the state visited the most.
+ */
+public class CompactACTree {
+  static final int ROOT = 0;
+  static final int NONE = -1;
+
+  //Trie
+  char[] label       = new char[16];   // character of the edge from the parent
+  int[]  firstChild  = new int[16];
+  int[]  nextSibling = new int[16];
+  /** Pattern id of a final node, -1 otherwise */
+  int[]  output      = new int[16];
+  int[]  depth       = new int[16];
+  int    nodes;
+
+  //Automaton, valid once compiled
+  int[]  fail;
+  /** Nearest final node on the fail chain, ROOT if there is none */
+  int[]  link;
+  int[]  rootChild;  // child of the root by character, NONE if there is none
+
+  /** Pattern table indexed by pattern id */
+  String[] words = new String[16];
+  private int size;
+  private boolean isCompiled;
+  final char[] fold;  // input character map, null if none
+
+  public CompactACTree() {
+    this(false, false);
+  }
+
+  // Case and/or accent insensitive Trie, words and input are folded through a
+  // lookup table instead of being copied
+  public CompactACTree(boolean ignoreCase, boolean ignoreAccents) {
+    this.fold = CharFolding.table(ignoreCase, ignoreAccents);
+    newNode((char) 0, 0);
+  }
+
+  private int newNode(char chr, int depth) {
+    if (nodes == label.length) {
+      int len = nodes * 3 / 2 + 1;
+      label       = Arrays.copyOf(label, len);
+      firstChild  = Arrays.copyOf(firstChild, len);
+      nextSibling = Arrays.copyOf(nextSibling, len);
+      output      = Arrays.copyOf(output, len);
+      this.depth  = Arrays.copyOf(this.depth, len);
+    }
+    label[nodes]       = chr;
+    firstChild[nodes]  = NONE;
+    nextSibling[nodes] = NONE;
+    output[nodes]      = -1;
+    this.depth[nodes]  = depth;
+    return nodes++;
+  }
+
+  // returns the child of a node marked with the chr, NONE if there is no path
+  int child(int node, char chr) {
+    for (int t = firstChild[node]; t != NONE && label[t] <= chr; t = nextSibling[t])
+      if (label[t] == chr) return t;
+    return NONE;
+  }
+
+  // Split a string into chars and all addWord on it
+  public CompactACTree addWord(String word) {
+    return addWord(word.toCharArray());
+  }
+
+  // Adds a new word onto the Trie
+  public CompactACTree addWord(char[] word) {
+    int node = ROOT;
+    for (char e : word) {
+      if (fold != null) e = fold[e];
+      // Keep the siblings sorted, so a missing child is found early
+      int prev = NONE;
+      int t = firstChild[node];
+      while (t != NONE && label[t] < e) {
+        prev = t;
+        t = nextSibling[t];
+      }
+      if (t == NONE || label[t] != e) {
+        int n = newNode(e, depth[node] + 1);
+        nextSibling[n] = t;
+        if (prev == NONE) firstChild[node] = n;
+        else nextSibling[prev] = n;
+        t = n;
+      }
+      node = t;
+    }
+    if (output[node] < 0) {
+      if (size == words.length) words = Arrays.copyOf(words, size * 3 / 2 + 1);
+      output[node] = size++;
+    }
+    words[output[node]] = new String(word);
+    isCompiled = false;
+    return this;
+  }
+
+  public boolean isCompiled() {
+    return this.isCompiled;
+  }
+
+  /** Number of words of the dictionary */
+  public int size() {
+    return size;
+  }
+
+  /** Number of nodes of the Trie, including the root */
+  public int nodes() {
+    return nodes;
+  }
+
+  /** Returns the word of a pattern id */
+  public String word(int id) {
+    return words[id];
+  }
+
+  /** Computes the fail links of the Trie, on BFS order over an int queue. */
+  public CompactACTree compile() {
+    fail = new int[nodes];
+    link = new int[nodes];
+    char maxChar = 0;
+    for (int t = firstChild[ROOT]; t != NONE; t = nextSibling[t])
+      maxChar = label[t];
+    rootChild = new int[nodes > 1 ? maxChar + 1 : 0];
+    Arrays.fill(rootChild, NONE);
+    int[] queue = new int[nodes];
+    int head = 0;
+    int tail = 0;
+    for (int t = firstChild[ROOT]; t != NONE; t = nextSibling[t]) {
+      rootChild[label[t]] = t;
+      queue[tail++] = t;
+    }
+    while (head < tail) {
+      int s = queue[head++];
+      for (int t = firstChild[s]; t != NONE; t = nextSibling[t]) {
+        queue[tail++] = t;
+        int f = fail[s];
+        int c;
+        while ((c = child(f, label[t])) == NONE && f != ROOT)
+          f = fail[f];
+        fail[t] = c == NONE ? ROOT : c;
+        link[t] = output[fail[t]] >= 0 ? fail[t] : link[fail[t]];
+      }
+    }
+    isCompiled = true;
+    return this;
+  }
+
+  /**
+   * Moves the compiled automaton one character.
+   *
+   * @param state current state
+   * @param chr next input character
+   * @return the next state, following fail links if needed
+   */
+  public int next(int state, char chr) {
+    if (fold != null) chr = fold[chr];
+    while (state != ROOT) {
+      int t = child(state, chr);
+      if (t != NONE) return t;
+      state = fail[state];
+    }
+    return chr < rootChild.length && rootChild[chr] != NONE ? rootChild[chr] : ROOT;
+  }
+
+  /**
+   * Counts all the (overlapping) occurrences of the dictionary on a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @return number of matches
+   */
+  public int count(char[] text, int from, int to) {
+    if (!isCompiled)
+      compile();
+    int state = ROOT;
+    int matches = 0;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t]) matches++;
+    }
+    return matches;
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, MatchHandler handler) {
+    if (!isCompiled)
+      compile();
+    int state = ROOT;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        handler.onMatch(output[t], i + 1 - depth[t], i + 1);
+    }
+  }
+}
@@ -0,0 +1,628 @@
+package io.zenathark.tools;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.text.*;
+import java.math.*;
+import java.util.regex.*;
+import java.util.function.*;
+
+/**
+ * Immutable Aho-Corasick automaton stored as a double-array.
+ *
+ * <p>A state <tt>s</tt> has a transition on the character <tt>c</tt> to the state
+ * <tt>t = base[s] + code(c)</tt> iff <tt>check[t] == s</tt>. Characters are mapped
+ * to dense codes with a table built from the alphabet of the dictionary, so the size
+ * of the arrays depends on the real alphabet and not on the whole UTF-16 range.
+ * Fail links and outputs are kept on parallel <tt>int</tt> arrays indexed by state,
+ * hence scanning a text does not allocate nor box any character.
+ *
+ * <p>Several patterns of {@link AhoCorasickTree#addPattern(String)} can end on the
+ * same state, the other pattern ids of a state are stored on <tt>extraIds</tt> as a
+ * list ended by -1.
+ * Since a pattern matches strings of different lengths, the start of a match is
+ * computed from the depth of the final state.
+ *
+ * <p>Instances are created with {@link AhoCorasickTree#freeze()} and can be shared
+ * between threads.
+ */
+public final class DoubleArrayACTree {
+  static final int ROOT = 0;
+  static final int FREE = -1;
+  /** File header, "ACDA" */
+  static final int MAGIC = 0x41434441;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 5 * 4;
+
+  /** Character to code table, 0 means the character is not in the alphabet */
+  final char[] codes;
+  final int[] base;
+  final int[] check;
+  final int[] fail;
+  /** Pattern id of a final state, -1 otherwise */
+  final int[] output;
+  /** Nearest final state on the fail chain, ROOT if there is none */
+  final int[] link;
+  /** Offset on extraIds of the other pattern ids recognized by each state */
+  final int[] extra;
+  /** Lists of pattern ids ended by -1, the first one is the empty list */
+  final int[] extraIds;
+  /** Pattern table indexed by pattern id */
+  final String[] words;
+  /** Longest match of every pattern */
+  final int[] lengths;
+  /** Payload of every pattern, indexed by pattern id */
+  final long[] payloads;
+  /** Length of the prefix recognized by each state */
+  final int[] depth;
+
+  DoubleArrayACTree(AhoCorasickTree root) {
+    // Number the nodes in BFS order, the fail links of a node always point to
+    // a node with a lower number.
+    ArrayList<AhoCorasickTree> nodes = new ArrayList<>();
+    IdentityHashMap<AhoCorasickTree, Integer> ids = new IdentityHashMap<>();
+    TreeSet<Character> alphabet = new TreeSet<>();
+    nodes.add(root);
+    ids.put(root, 0);
+    for (int i = 0; i < nodes.size(); i++) {
+      for (Map.Entry<Character, AhoCorasickTree> e : nodes.get(i).childs.entrySet()) {
+        alphabet.add(e.getKey());
+        ids.put(e.getValue(), nodes.size());
+        nodes.add(e.getValue());
+      }
+    }
+
+    char maxChar = alphabet.isEmpty() ? 0 : alphabet.last();
+    char[] alphabetCodes = new char[maxChar + 1];
+    char code = 0;
+    for (char c : alphabet) alphabetCodes[c] = ++code;
+    codes = root.inputMap == null ? alphabetCodes : CharFolding.apply(root.inputMap, alphabetCodes);
+
+    // Place the children of every node on the double-array
+    int[] state = new int[nodes.size()];
+    int[] b = new int[Math.max(16, nodes.size() * 2)];
+    int[] chk = new int[b.length];
+    Arrays.fill(chk, FREE);
+    chk[ROOT] = ROOT;
+    int nextFree = 1;
+    int size = 1;
+    char[] childCodes = new char[alphabet.size()];
+    int[] childIds = new int[alphabet.size()];
+    for (int i = 0; i < nodes.size(); i++) {
+      HashMap<Character, AhoCorasickTree> childs = nodes.get(i).childs;
+      if (childs.isEmpty()) continue;
+      int n = 0;
+      for (Map.Entry<Character, AhoCorasickTree> e : childs.entrySet()) {
+        childCodes[n] = alphabetCodes[e.getKey()];
+        childIds[n++] = ids.get(e.getValue());
+      }
+      sortByCode(childCodes, childIds, n);
+      while (nextFree < chk.length && chk[nextFree] != FREE) nextFree++;
+      int pos = nextFree;
+      int bs;
+      while (true) {
+        bs = pos - childCodes[0];
+        if (bs >= 0 && fits(chk, bs, childCodes, n)) break;
+        do {
+          pos++;
+        } while (pos < chk.length && chk[pos] != FREE);
+      }
+      int last = bs + childCodes[n - 1];
+      if (last >= chk.length) {
+        int len = Math.max(last + 1, chk.length * 3 / 2 + 1);
+        b = Arrays.copyOf(b, len);
+        int old = chk.length;
+        chk = Arrays.copyOf(chk, len);
+        Arrays.fill(chk, old, len, FREE);
+      }
+      int s = state[i];
+      b[s] = bs;
+      for (int j = 0; j < n; j++) {
+        int t = bs + childCodes[j];
+        chk[t] = s;
+        state[childIds[j]] = t;
+      }
+      size = Math.max(size, last + 1);
+    }
+    base = Arrays.copyOf(b, size);
+    check = Arrays.copyOf(chk, size);
+    check[ROOT] = FREE;
+
+    fail = new int[size];
+    output = new int[size];
+    link = new int[size];
+    Arrays.fill(output, -1);
+    extra = new int[size];
+    int[] extraList = {-1};
+    int nExtra = 1;
+    words = new String[root.size];
+    lengths = new int[root.size];
+    payloads = new long[root.size];
+    for (int i = 1; i < nodes.size(); i++) {
+      AhoCorasickTree node = nodes.get(i);
+      int s = state[i];
+      int f = state[ids.get(node.fall.get())];
+      fail[s] = f;
+      link[s] = output[f] >= 0 ? f : link[f];
+      if (node.isFinal()) {
+        output[s] = node.id;
+        words[node.id] = node.word;
+        lengths[node.id] = node.word.length();
+        payloads[node.id] = node.payload;
+      }
+      if (node.sharedIds != null) {
+        int len = nExtra + node.sharedIds.length + 1;
+        if (len > extraList.length)
+          extraList = Arrays.copyOf(extraList, Math.max(extraList.length * 2, len));
+        extra[s] = nExtra;
+        for (int id : node.sharedIds) extraList[nExtra++] = id;
+        extraList[nExtra++] = -1;
+      }
+    }
+    extraIds = Arrays.copyOf(extraList, nExtra);
+    if (root.patterns != null)
+      for (CharPattern p : root.patterns) {
+        words[p.id] = p.source;
+        lengths[p.id] = p.maxLength();
+        payloads[p.id] = p.payload;
+      }
+    depth = depths(check);
+  }
+
+  private DoubleArrayACTree(char[] codes, int[] base, int[] check, int[] fail, int[] output,
+                            int[] link, int[] extra, int[] extraIds, String[] words,
+                            int[] lengths, long[] payloads) {
+    this.codes = codes;
+    this.base = base;
+    this.check = check;
+    this.fail = fail;
+    this.output = output;
+    this.link = link;
+    this.extra = extra;
+    this.extraIds = extraIds;
+    this.words = words;
+    this.lengths = lengths;
+    this.payloads = payloads;
+    this.depth = depths(check);
+  }
+
+  // The parent of a state is its check, but parents can be placed after their children
+  private static int[] depths(int[] check) {
+    int[] depth = new int[check.length];
+    Arrays.fill(depth, -1);
+    depth[ROOT] = 0;
+    for (int t = 0; t < check.length; t++) {
+      if (depth[t] >= 0 || check[t] == FREE) continue;
+      int s = t;
+      int d = 0;
+      while (depth[s] < 0) {
+        s = check[s];
+        d++;
+      }
+      d += depth[s];
+      for (s = t; depth[s] < 0; s = check[s]) depth[s] = d--;
+    }
+    return depth;
+  }
+
+  /**
+   * Writes the automaton into a file that can be read back with {@link #load(Path)}.
+   *
+   * <p>The file is a little-endian image of the automaton arrays: a header with the
+   * magic number, the format version and the number of codes, states and patterns,
+   * followed by the code table, the <tt>base</tt>, <tt>check</tt>, <tt>fail</tt>,
+   * <tt>output</tt>, <tt>link</tt> and <tt>extra</tt> arrays, the length and the
+   * contents of <tt>extraIds</tt>, the longest match and the number of characters of
+   * every pattern, the payloads and the characters of all the patterns. Each section
+   * is padded to 4 bytes. Images of any other version are rejected by load.
+   *
+   * @param path destination, it is overwritten if it exists
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path path) throws IOException {
+    int[] wordLengths = new int[words.length];
+    int chars = 0;
+    for (int i = 0; i < words.length; i++) {
+      wordLengths[i] = words[i] == null ? 0 : words[i].length();
+      chars += wordLengths[i];
+    }
+    long size = HEADER_SIZE + padded(codes.length) + 6L * 4 * base.length
+        + 4L * (1 + extraIds.length) + 2L * 4 * words.length + 8L * words.length
+        + padded(chars);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION)
+          .putInt(codes.length).putInt(base.length).putInt(words.length);
+      buffer.asCharBuffer().put(codes);
+      buffer.position(buffer.position() + padded(codes.length));
+      for (int[] array : new int[][] {base, check, fail, output, link, extra}) putInts(buffer, array);
+      buffer.putInt(extraIds.length);
+      putInts(buffer, extraIds);
+      putInts(buffer, lengths);
+      putInts(buffer, wordLengths);
+      buffer.asLongBuffer().put(payloads);
+      buffer.position(buffer.position() + 8 * payloads.length);
+      CharBuffer text = buffer.asCharBuffer();
+      for (String word : words)
+        if (word != null) text.put(word);
+      buffer.force();
+    }
+  }
+
+  /**
+   * Reads an automaton written by {@link #save(Path)}. The file is memory mapped and
+   * its arrays are copied with bulk gets, no object is created per state.
+   *
+   * @param path automaton image
+   * @return the automaton
+   * @throws IOException if the file cannot be read or is not an automaton image
+   */
+  public static DoubleArrayACTree load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE)
+        throw new IOException(String.format("Not a compiled automaton: %s", path));
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt() != MAGIC)
+        throw new IOException(String.format("Not a compiled automaton: %s", path));
+      int version = buffer.getInt();
+      if (version != VERSION)
+        throw new IOException(String.format("Unsupported automaton version %d: %s", version, path));
+      try {
+        char[] codes = new char[buffer.getInt()];
+        int states = buffer.getInt();
+        int patterns = buffer.getInt();
+        buffer.asCharBuffer().get(codes);
+        buffer.position(buffer.position() + padded(codes.length));
+        int[][] arrays = new int[6][];
+        for (int j = 0; j < 6; j++) arrays[j] = getInts(buffer, states);
+        int[] extraIds = getInts(buffer, buffer.getInt());
+        int[] lengths = getInts(buffer, patterns);
+        int[] wordLengths = getInts(buffer, patterns);
+        long[] payloads = new long[patterns];
+        buffer.asLongBuffer().get(payloads);
+        buffer.position(buffer.position() + 8 * patterns);
+        String[] words = new String[patterns];
+        CharBuffer text = buffer.asCharBuffer();
+        char[] word = new char[0];
+        for (int i = 0; i < patterns; i++) {
+          if (word.length < wordLengths[i]) word = new char[wordLengths[i]];
+          text.get(word, 0, wordLengths[i]);
+          words[i] = new String(word, 0, wordLengths[i]);
+        }
+        return new DoubleArrayACTree(codes, arrays[0], arrays[1], arrays[2], arrays[3],
+                                     arrays[4], arrays[5], extraIds, words, lengths, payloads);
+      } catch (BufferUnderflowException | IllegalArgumentException
+               | NegativeArraySizeException e) {
+        throw new IOException(String.format("Truncated automaton: %s", path), e);
+      }
+    }
+  }
+
+  private static void putInts(ByteBuffer buffer, int[] array) {
+    buffer.asIntBuffer().put(array);
+    buffer.position(buffer.position() + 4 * array.length);
+  }
+
+  private static int[] getInts(ByteBuffer buffer, int n) {
+    int[] array = new int[n];
+    buffer.asIntBuffer().get(array);
+    buffer.position(buffer.position() + 4 * n);
+    return array;
+  }
+
+  private static int padded(int chars) {
+    return (chars * 2 + 3) & ~3;
+  }
+
+  private static boolean fits(int[] chk, int bs, char[] childCodes, int n) {
+    for (int j = 0; j < n; j++) {
+      int t = bs + childCodes[j];
+      if (t < chk.length && chk[t] != FREE) return false;
+    }
+    return true;
+  }
+
+  private static void sortByCode(char[] childCodes, int[] childIds, int n) {
+    for (int i = 1; i < n; i++) {
+      char c = childCodes[i];
+      int id = childIds[i];
+      int j = i - 1;
+      while (j >= 0 && childCodes[j] > c) {
+        childCodes[j + 1] = childCodes[j];
+        childIds[j + 1] = childIds[j];
+        j--;
+      }
+      childCodes[j + 1] = c;
+      childIds[j + 1] = id;
+    }
+  }
+
+  /** Returns the code of a character, 0 if it is not part of the alphabet */
+  public int code(char chr) {
+    return chr < codes.length ? codes[chr] : 0;
+  }
+
+  /**
+   * Moves the automaton one character.
+   *
+   * @param state current state
+   * @param chr next input character
+   * @return the next state, following fail links if needed
+   */
+  public int next(int state, char chr) {
+    int c = chr < codes.length ? codes[chr] : 0;
+    if (c == 0) return ROOT;
+    while (true) {
+      int t = base[state] + c;
+      if (t < check.length && check[t] == state) return t;
+      if (state == ROOT) return ROOT;
+      state = fail[state];
+    }
+  }
+
+  /** Pattern id recognized by the state, -1 if the state is not final */
+  public int output(int state) {
+    return output[state];
+  }
+
+  /** Next final state on the fail chain of the state, 0 (root) if there is none */
+  public int outputLink(int state) {
+    return link[state];
+  }
+
+  /** Returns the word of a pattern id */
+  public String word(int id) {
+    return words[id];
+  }
+
+  /** Returns the payload of a pattern id, 0 if none was given */
+  public long payload(int id) {
+    return payloads[id];
+  }
+
+  /** Number of patterns of the automaton */
+  public int size() {
+    return words.length;
+  }
+
+  /** Number of states, including free cells of the double-array */
+  public int capacity() {
+    return base.length;
+  }
+
+  /**
+   * Counts all the (overlapping) occurrences of the dictionary on a text.
+   *
+   * @param text input text
+   * @return number of matches
+   */
+  public int count(CharSequence text) {
+    int state = ROOT;
+    int matches = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = next(state, text.charAt(i));
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++]) matches++;
+    }
+    return matches;
+  }
+
+  /**
+   * Counts all the (overlapping) occurrences of the dictionary on a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @return number of matches
+   */
+  public int count(char[] text, int from, int to) {
+    int state = ROOT;
+    int matches = 0;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++]) matches++;
+    }
+    return matches;
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a text.
+   *
+   * @param text input text
+   * @param handler receives every match
+   */
+  public void scan(CharSequence text, MatchHandler handler) {
+    int state = ROOT;
+    for (int i = 0; i < text.length(); i++) {
+      state = next(state, text.charAt(i));
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+          handler.onMatch(o, i + 1 - depth[t], i + 1);
+    }
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, MatchHandler handler) {
+    int state = ROOT;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+          handler.onMatch(o, i + 1 - depth[t], i + 1);
+    }
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text,
+   * along with the payload of every matched pattern.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, PayloadMatchHandler handler) {
+    int state = ROOT;
+    for (int i = from; i < to; i++) {
+      state = next(state, text[i]);
+      for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+        for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+          handler.onMatch(o, payloads[o], i + 1 - depth[t], i + 1);
+    }
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a batch of
+   * documents. Every document is scanned from the root, so matches never span two
+   * documents, and no object is created once <tt>matches</tt> has grown.
+   *
+   * @param docs documents, the document id of a match is its index on this array
+   * @param from first document to scan, inclusive
+   * @param to last document to scan, exclusive
+   * @param matches receives the matches, it is cleared first
+   * @return <tt>matches</tt>
+   */
+  public BatchMatchList scan(CharSequence[] docs, int from, int to, BatchMatchList matches) {
+    matches.clear();
+    for (int d = from; d < to; d++) {
+      matches.beginDocument();
+      CharSequence text = docs[d];
+      int state = ROOT;
+      for (int i = 0, n = text.length(); i < n; i++) {
+        state = next(state, text.charAt(i));
+        for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+          for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+            matches.onMatch(d, o, i + 1 - depth[t], i + 1);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a batch of
+   * documents stored back to back on a single buffer.
+   *
+   * @param buffer characters of all the documents
+   * @param offsets the document <tt>k</tt> spans from <tt>offsets[k]</tt> to
+   *   <tt>offsets[k + 1]</tt> on the buffer, so it needs <tt>documents + 1</tt> entries
+   * @param documents number of documents
+   * @param matches receives the matches, it is cleared first. Positions are
+   *   relative to the start of each document
+   * @return <tt>matches</tt>
+   */
+  public BatchMatchList scan(char[] buffer, int[] offsets, int documents, BatchMatchList matches) {
+    matches.clear();
+    for (int d = 0; d < documents; d++) {
+      matches.beginDocument();
+      int base = offsets[d];
+      int state = ROOT;
+      for (int i = base, to = offsets[d + 1]; i < to; i++) {
+        state = next(state, buffer[i]);
+        for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t])
+          for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+            matches.onMatch(d, o, i + 1 - base - depth[t], i + 1 - base);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Reports the occurrences of the dictionary on a text following a match mode.
+   *
+   * @param text input text
+   * @param mode {@link MatchMode#ALL} for every occurrence, or one of the leftmost
+   *   modes for non-overlapping occurrences
+   * @param handler receives every match
+   */
+  public void scan(CharSequence text, MatchMode mode, MatchHandler handler) {
+    if (mode == MatchMode.ALL) {
+      scan(text, handler);
+      return;
+    }
+    final boolean longest = mode == MatchMode.LEFTMOST_LONGEST;
+    int state = ROOT;
+    int i = 0;
+    int id = -1;
+    int start = 0;
+    int end = 0;
+    while (i < text.length() || id >= 0) {
+      if (i < text.length()) {
+        state = next(state, text.charAt(i++));
+        for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t]) {
+          int s = i - depth[t];
+          for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+            if (id < 0 || s < start || (s == start && (longest ? i > end : o < id))) {
+              id = o;
+              start = s;
+              end = i;
+            }
+        }
+        // Commit once no match can start at or before the candidate
+        if (id < 0 || i - depth[state] <= start) continue;
+      }
+      handler.onMatch(id, start, end);
+      i = end;
+      state = ROOT;
+      id = -1;
+    }
+  }
+
+  /**
+   * Reports the occurrences of the dictionary on a slice of a text following a match
+   * mode. On the leftmost modes, the automaton goes back to the root after reporting a
+   * match and the scan resumes at its end, so matches never overlap.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param mode {@link MatchMode#ALL} for every occurrence, or one of the leftmost
+   *   modes for non-overlapping occurrences
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, MatchMode mode, MatchHandler handler) {
+    if (mode == MatchMode.ALL) {
+      scan(text, from, to, handler);
+      return;
+    }
+    final boolean longest = mode == MatchMode.LEFTMOST_LONGEST;
+    int state = ROOT;
+    int i = from;
+    int id = -1;
+    int start = 0;
+    int end = 0;
+    while (i < to || id >= 0) {
+      if (i < to) {
+        state = next(state, text[i++]);
+        for (int t = output[state] >= 0 ? state : link[state]; t != ROOT; t = link[t]) {
+          int s = i - depth[t];
+          for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+            if (id < 0 || s < start || (s == start && (longest ? i > end : o < id))) {
+              id = o;
+              start = s;
+              end = i;
+            }
+        }
+        // Commit once no match can start at or before the candidate
+        if (id < 0 || i - depth[state] <= start) continue;
+      }
+      handler.onMatch(id, start, end);
+      i = end;
+      state = ROOT;
+      id = -1;
+    }
+  }
+}
@@ -1,4 +1,7 @@
+package io.zenathark.tools;
+
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 import java.text.*;
 import java.math.*;
@@ -9,11 +12,18 @@ public class FastACTree {
   //Trie
   final FastACTree[] childs = new FastACTree['z'-'a'+1];
   final FastACTree   parent;
+  final FastACTree   root;
 
   char       chr;
   boolean    isEnd;
   String     word;
+  int        id;      // index of the word, in insertion order
+  long       payload; // payload of the word, 0 if none
   FastACTree fall;
+  FastACTree out;     // nearest final node on the fail chain
+  FastACTree[] delta; // complete transition function, only on deterministic mode
+  char[]     fold;    // input character map, null if none. Only kept by the root
+  ACPrefilter prefilter; // candidate starts of the matches. Only kept by the root
 
 
   private int size;
@@ -23,13 +33,22 @@ public class FastACTree {
     this((char) 0, null);
   }
 
+  // Root of a case and/or accent insensitive Trie, words and input are folded
+  // through a lookup table instead of being copied
+  public FastACTree(boolean ignoreCase, boolean ignoreAccents) {
+    this((char) 0, null);
+    this.fold = CharFolding.table(ignoreCase, ignoreAccents);
+  }
+
   public FastACTree(char chr, FastACTree parent) {
     this.chr        = chr;
     this.parent     = parent;
+    this.root       = parent == null ? this : parent.root;
     this.isEnd      = false;
     this.fall       = this;
     this.isCompiled = false;
     this.size       = 0;
+    this.id         = -1;
   }
 
 
@@ -49,12 +68,21 @@ public class FastACTree {
     return addWord(word.toCharArray());
   }
 
-  // Adds a new word onto the Trie
   public FastACTree addWord(char[] word) {
+    return addWord(word, 0);
+  }
+
+  public FastACTree addWord(String word, long payload) {
+    return addWord(word.toCharArray(), payload);
+  }
+
+  // Adds a new word onto the Trie, the payload is reported with its matches
+  public FastACTree addWord(char[] word, long payload) {
     String w = new String(word);
     FastACTree currentNode = this;
     FastACTree nextNode = null;
     for (char e: word) {
+      if (fold != null) e = fold[e];
 	    nextNode = currentNode.getChild(e);
       if (nextNode == null) {
         nextNode = new FastACTree(e, currentNode);
@@ -62,8 +90,11 @@ public class FastACTree {
       }
 	    currentNode = nextNode;
     }
+    if (!currentNode.isEnd)
+      currentNode.id = size++;
     currentNode.isEnd = true;
     currentNode.word  = w;
+    currentNode.payload = payload;
     isCompiled = false;
     return this;
   }
@@ -77,27 +108,259 @@ public class FastACTree {
   }
 
   public FastACTree compile() {
+    return compile(false);
+  }
+
+  /**
+   * Computes the fail links of the Trie.
+   *
+   * @param deterministic if true, the complete transition function is also
+   *   materialized on every node (goto and fail folded), trading 26 references per
+   *   node for exactly one array load per input character
+   */
+  public FastACTree compile(boolean deterministic) {
     ArrayDeque<FastACTree> queue = new ArrayDeque<>();
-    for (FastACTree e: this.childs)
-	    queue.addLast(e);
+    this.fall = this;
+    this.out  = null;
+    this.delta = deterministic ? new FastACTree[childs.length] : null;
+    for (int c = 0; c < childs.length; c++) {
+      FastACTree e = childs[c];
+      if (deterministic) delta[c] = e == null ? this : e;
+      if (e == null) continue;
+      e.fall = this;
+      e.out  = null;
+      queue.addLast(e);
+    }
     FastACTree currentNode = null;
     while (!queue.isEmpty()) {
 	    currentNode = queue.pop();
-	    for (FastACTree e: currentNode.childs)
+      currentNode.delta = deterministic ? new FastACTree[childs.length] : null;
+      for (int c = 0; c < childs.length; c++) {
+        FastACTree e = currentNode.childs[c];
+        if (deterministic) currentNode.delta[c] = e == null ? currentNode.fall.delta[c] : e;
+        if (e == null) continue;
         queue.addLast(e);
-	    FastACTree fall = currentNode.parent.fall;
-	    while (fall.getChild(chr) == null && !fall.isRoot())
-        fall = fall.fall;
-	    currentNode.fall = fall.getChild(chr);
-	    if (currentNode.fall == null)
-        currentNode.fall = this;
-	    if (currentNode == currentNode.fall)
-        currentNode.fall = this;
+        FastACTree fall = currentNode.fall;
+        while (fall.getChild(e.chr) == null && !fall.isRoot())
+          fall = fall.fall;
+        e.fall = fall.getChild(e.chr);
+        if (e.fall == null)
+          e.fall = this;
+        e.out = e.fall.isEnd ? e.fall : e.fall.out;
+      }
     }
+    prefilter = new ACPrefilter(this);
     isCompiled = true;
     return this;
   }
 
+  public boolean isCompiled() {
+    return this.isCompiled;
+  }
+
+  /**
+   * Moves the compiled automaton one character. Characters outside of the Trie
+   * alphabet move the automaton back to the root.
+   *
+   * @param chr next input character
+   * @return the next state
+   */
+  public FastACTree next(char chr) {
+    if (root.fold != null) chr = root.fold[chr];
+    int c = chr - 'a';
+    if (c < 0 || c >= childs.length) return root;
+    if (delta != null) return delta[c];
+    FastACTree state = this;
+    while (state.childs[c] == null && !state.isRoot())
+      state = state.fall;
+    return state.childs[c] == null ? state : state.childs[c];
+  }
+
+  /**
+   * Counts all the (overlapping) occurrences of the dictionary on a slice of a text.
+   * Positions where no word can start are skipped with an {@link ACPrefilter}.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @return number of matches
+   */
+  public int count(char[] text, int from, int to) {
+    if (!isCompiled)
+      compile();
+    FastACTree state = this;
+    int matches = 0;
+    for (int i = from; i < to; i++) {
+      // On the root, jump to the next position where a word can start
+      if (state == this && (i = prefilter.skip(text, i, to)) == to) break;
+      state = state.next(text[i]);
+      for (FastACTree t = state.isEnd ? state : state.out; t != null; t = t.out) matches++;
+    }
+    return matches;
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text.
+   * Positions where no word can start are skipped with an {@link ACPrefilter}.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, MatchHandler handler) {
+    if (!isCompiled)
+      compile();
+    FastACTree state = this;
+    for (int i = from; i < to; i++) {
+      // On the root, jump to the next position where a word can start
+      if (state == this && (i = prefilter.skip(text, i, to)) == to) break;
+      state = state.next(text[i]);
+      for (FastACTree t = state.isEnd ? state : state.out; t != null; t = t.out)
+        handler.onMatch(t.id, i + 1 - t.word.length(), i + 1);
+    }
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text,
+   * along with the payload of every matched word.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param handler receives every match
+   */
+  public void scan(char[] text, int from, int to, PayloadMatchHandler handler) {
+    if (!isCompiled)
+      compile();
+    FastACTree state = this;
+    for (int i = from; i < to; i++) {
+      if (state == this && (i = prefilter.skip(text, i, to)) == to) break;
+      state = state.next(text[i]);
+      for (FastACTree t = state.isEnd ? state : state.out; t != null; t = t.out)
+        handler.onMatch(t.id, t.payload, i + 1 - t.word.length(), i + 1);
+    }
+  }
+
+  /**
+   * Finds the words of the dictionary within an edit distance of a token.
+   *
+   * <p>The Trie is walked depth first computing one row of the Levenshtein matrix
+   * per node, so the prefixes shared by many words are computed once. A subtree is
+   * pruned as soon as every cell of its row exceeds <tt>k</tt>, hence only the
+   * prefixes within distance <tt>k</tt> of a prefix of the token are visited, not
+   * the whole dictionary. The tree does not need to be compiled.
+   *
+   * @param token word to look up, it is folded as the dictionary
+   * @param k largest edit distance (insertions, deletions and substitutions)
+   * @param consumer receives every word and its distance to the token
+   * @throws IllegalArgumentException if <tt>k</tt> is negative
+   */
+  public void fuzzySearch(CharSequence token, int k, ObjIntConsumer<String> consumer) {
+    fuzzySearch(token, 0, token.length(), k,
+                (node, distance) -> consumer.accept(node.word, distance));
+  }
+
+  /**
+   * Returns the words of the dictionary within an edit distance of a token.
+   *
+   * @see #fuzzySearch(CharSequence, int, ObjIntConsumer)
+   */
+  public List<String> fuzzySearch(CharSequence token, int k) {
+    ArrayList<String> ans = new ArrayList<>();
+    fuzzySearch(token, k, (word, distance) -> ans.add(word));
+    return ans;
+  }
+
+  /**
+   * Reports the words of the dictionary within an edit distance of every token of a
+   * slice of a text. Tokens are the longest runs of characters of the Trie alphabet.
+   * The Levenshtein rows are allocated once per call, sized for the longest token, and
+   * reused by every token.
+   *
+   * @param text input text
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @param k largest edit distance of a token to a word
+   * @param handler receives the id of every word close to a token, and the token
+   *   bounds as start and end
+   * @throws IllegalArgumentException if <tt>k</tt> is negative
+   */
+  public void fuzzyScan(char[] text, int from, int to, int k, MatchHandler handler) {
+    int longest = 0;
+    for (int i = from; i < to; ) {
+      while (i < to && !isLetter(text[i])) i++;
+      int start = i;
+      while (i < to && isLetter(text[i])) i++;
+      longest = Math.max(longest, i - start);
+    }
+    char[] chars = new char[longest];
+    int[][] rows = rows(longest, k);
+    CharSequence input = CharBuffer.wrap(text);
+    int i = from;
+    while (i < to) {
+      while (i < to && !isLetter(text[i])) i++;
+      int start = i;
+      while (i < to && isLetter(text[i])) i++;
+      if (start == i) break;
+      final int end = i;
+      fuzzySearch(input, start, end, k, chars, rows,
+                  (node, distance) -> handler.onMatch(node.id, start, end));
+    }
+  }
+
+  private boolean isLetter(char chr) {
+    if (fold != null) chr = fold[chr];
+    return chr >= 'a' && chr - 'a' < childs.length;
+  }
+
+  private void fuzzySearch(CharSequence token, int from, int to, int k,
+                           ObjIntConsumer<FastACTree> consumer) {
+    fuzzySearch(token, from, to, k, new char[to - from], rows(to - from, k), consumer);
+  }
+
+  // Levenshtein rows for tokens up to n characters. Rows deeper than n + k always
+  // exceed k, so they are never computed
+  private static int[][] rows(int n, int k) {
+    if (k < 0)
+      throw new IllegalArgumentException(String.format("Illegal edit distance: %d", k));
+    return new int[n + k + 2][n + 1];
+  }
+
+  // Searches a token with buffers allocated for tokens of at least its length
+  private void fuzzySearch(CharSequence token, int from, int to, int k, char[] chars,
+                           int[][] rows, ObjIntConsumer<FastACTree> consumer) {
+    int n = to - from;
+    for (int j = 0; j < n; j++) {
+      char c = token.charAt(from + j);
+      chars[j] = root.fold == null ? c : root.fold[c];
+    }
+    for (int j = 0; j <= n; j++) rows[0][j] = j;
+    fuzzySearch(chars, n, k, rows, 1, consumer);
+  }
+
+  // Computes the row of every child from the row of this node, rows[depth - 1]. Only
+  // the first n + 1 cells of a row are used
+  private void fuzzySearch(char[] token, int n, int k, int[][] rows, int depth,
+                           ObjIntConsumer<FastACTree> consumer) {
+    int[] prev = rows[depth - 1];
+    int[] row = rows[depth];
+    for (FastACTree e : childs) {
+      if (e == null) continue;
+      row[0] = depth;
+      int min = depth;
+      for (int j = 1; j <= n; j++) {
+        int cost = token[j - 1] == e.chr ? prev[j - 1] : prev[j - 1] + 1;
+        row[j] = Math.min(cost, Math.min(prev[j], row[j - 1]) + 1);
+        min = Math.min(min, row[j]);
+      }
+      if (e.isEnd && row[n] <= k)
+        consumer.accept(e, row[n]);
+      if (min <= k)
+        e.fuzzySearch(token, n, k, rows, depth + 1, consumer);
+    }
+  }
+
   @Override
   public String toString() {
     return String.format("[Root = %b\n Char = %c\n Parent chr = %c]", isEnd, chr, parent.chr);
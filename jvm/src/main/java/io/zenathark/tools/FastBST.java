@@ -12,6 +12,7 @@ public class FastBST {
   public FastBST left;
   public FastBST parent;
   public int label;
+  public boolean red; // Color of the node, only used by the balanced operations
   // Payload
 
   public static FastBST createRoot(int label) {
@@ -58,12 +59,14 @@ public class FastBST {
         if (cNode.left != null) cNode = cNode.left;
         else {
           cNode.left = newNode;
+          newNode.parent = cNode;
           break;
         }
       } else if (newNode.getLabel() > cNode.getLabel()) {
         if (cNode.right != null) cNode = cNode.right;
         else {
           cNode.right = newNode;
+          newNode.parent = cNode;
           break;
         }
       } else { // Same labels are not allowed
@@ -75,62 +78,314 @@ public class FastBST {
 
   public static FastBST search(FastBST root, int label) {
     FastBST ans = root;
-    while (ans != null) {
-      if (ans.label == label) break;
-      else if (ans.label < label) {
-        ans = ans.right;
-        break;
-      } else {
-        ans = ans.left;
-        break;
-      }
-    }
+    while (ans != null && ans.label != label)
+      ans = ans.label < label ? ans.right : ans.left;
     return ans;
   }
 
   /**
-   * Remove a node. This function removes a node and replaces it with is in-order predecessor.
+   * Remove a node. This function removes a node and replaces it with is in-order successor.
    *
    * @param root BST's root
    * @param label Node's label to be removed
+   * @return the root of the tree, it changes if the root is removed
    */
   public static FastBST remove(FastBST root, int label) {
     FastBST d = search(root, label);
-    if (d.left == null && d.right == null) {
-      if (d.parent.left.label == d.label) d.parent.left = null;
-      else d.parent.right = null;
-
-    } else if (d.left == null && d.right != null) {
-      if (d.parent.left.label == d.label) d.parent.left = d.right;
-      else d.parent.right = d.right;
+    if (d == null) return root;
+    if (d.left == null) return transplant(root, d, d.right);
+    if (d.right == null) return transplant(root, d, d.left);
+    FastBST rep = minimum(d.right);
+    if (rep.parent != d) {
+      root = transplant(root, rep, rep.right);
+      rep.right = d.right;
+      rep.right.parent = rep;
+    }
+    root = transplant(root, d, rep);
+    rep.left = d.left;
+    rep.left.parent = rep;
+    return root;
+  }
 
-    } else if (d.left != null && d.right == null) {
-      if (d.parent.left.label == d.label) d.parent.left = d.left;
-      else d.parent.right = d.left;
+  /**
+   * Inserts a label keeping the tree balanced as a red-black tree, so the height is at
+   * most <tt>2 log(n + 1)</tt> even for sorted insertions. A tree must be built only
+   * with the balanced operations, starting from a root created by createRoot.
+   *
+   * @param root Root of the BST tree, null for an empty tree.
+   * @param label Label to insert, nothing changes if it is already on the tree.
+   * @return the new root of the tree
+   */
+  public static FastBST insertBalanced(FastBST root, int label) {
+    FastBST z = new FastBST(label);
+    if (root == null) return z;
+    FastBST cNode = root;
+    while (true) {
+      if (label < cNode.label) {
+        if (cNode.left == null) {
+          cNode.left = z;
+          break;
+        }
+        cNode = cNode.left;
+      } else if (label > cNode.label) {
+        if (cNode.right == null) {
+          cNode.right = z;
+          break;
+        }
+        cNode = cNode.right;
+      } else { // Same labels are not allowed
+        return root;
+      }
+    }
+    z.parent = cNode;
+    z.red = true;
+    while (isRed(z.parent)) {
+      FastBST p = z.parent;
+      FastBST g = p.parent; // not null, the root is black
+      FastBST uncle = p == g.left ? g.right : g.left;
+      if (isRed(uncle)) {
+        p.red = false;
+        uncle.red = false;
+        g.red = true;
+        z = g;
+        continue;
+      }
+      // Rotate z to the outside, then p over g
+      if (p == g.left && z == p.right) {
+        root = rotateLeft(root, z);
+        p = z;
+      } else if (p == g.right && z == p.left) {
+        root = rotateRight(root, z);
+        p = z;
+      }
+      p.red = false;
+      g.red = true;
+      root = p == g.left ? rotateRight(root, p) : rotateLeft(root, p);
+      break;
+    }
+    root.red = false;
+    return root;
+  }
 
+  /**
+   * Removes a label from a tree built with insertBalanced, keeping it balanced.
+   *
+   * @param root BST's root
+   * @param label Node's label to be removed
+   * @return the new root of the tree, null if it becomes empty
+   */
+  public static FastBST removeBalanced(FastBST root, int label) {
+    FastBST d = search(root, label);
+    if (d == null) return root;
+    boolean removedRed = d.red;
+    FastBST x;       // node that takes the place of the removed one, may be null
+    FastBST xParent;
+    if (d.left == null || d.right == null) {
+      x = d.left == null ? d.right : d.left;
+      xParent = d.parent;
+      root = transplant(root, d, x);
     } else {
-      FastBST rep = d.left;
-      while (rep.right != null) rep = rep.right;
-      if (d.parent.left.label == d.label) d.parent.left = rep;
-      else d.parent.right = rep;
+      FastBST rep = minimum(d.right);
+      removedRed = rep.red;
+      x = rep.right;
+      if (rep.parent == d) {
+        xParent = rep;
+      } else {
+        xParent = rep.parent;
+        root = transplant(root, rep, rep.right);
+        rep.right = d.right;
+        rep.right.parent = rep;
+      }
+      root = transplant(root, d, rep);
+      rep.left = d.left;
+      rep.left.parent = rep;
+      rep.red = d.red;
     }
+    if (removedRed) return root;
+    // x carries an extra black, move it up until it can be dropped
+    while (x != root && !isRed(x)) {
+      if (x == xParent.left) {
+        FastBST w = xParent.right;
+        if (isRed(w)) {
+          w.red = false;
+          xParent.red = true;
+          root = rotateLeft(root, w);
+          w = xParent.right;
+        }
+        if (!isRed(w.left) && !isRed(w.right)) {
+          w.red = true;
+          x = xParent;
+          xParent = x.parent;
+        } else {
+          if (!isRed(w.right)) {
+            w.left.red = false;
+            w.red = true;
+            root = rotateRight(root, w.left);
+            w = xParent.right;
+          }
+          w.red = xParent.red;
+          xParent.red = false;
+          w.right.red = false;
+          root = rotateLeft(root, w);
+          x = root;
+        }
+      } else {
+        FastBST w = xParent.left;
+        if (isRed(w)) {
+          w.red = false;
+          xParent.red = true;
+          root = rotateRight(root, w);
+          w = xParent.left;
+        }
+        if (!isRed(w.left) && !isRed(w.right)) {
+          w.red = true;
+          x = xParent;
+          xParent = x.parent;
+        } else {
+          if (!isRed(w.left)) {
+            w.right.red = false;
+            w.red = true;
+            root = rotateLeft(root, w.right);
+            w = xParent.left;
+          }
+          w.red = xParent.red;
+          xParent.red = false;
+          w.left.red = false;
+          root = rotateRight(root, w);
+          x = root;
+        }
+      }
+    }
+    if (x != null) x.red = false;
     return root;
   }
 
+  private static boolean isRed(FastBST node) {
+    return node != null && node.red;
+  }
+
+  private static FastBST minimum(FastBST node) {
+    while (node.left != null) node = node.left;
+    return node;
+  }
+
+  // Replaces the subtree of node with the subtree of rep, returns the new root
+  private static FastBST transplant(FastBST root, FastBST node, FastBST rep) {
+    if (node.parent == null) root = rep;
+    else if (node.parent.left == node) node.parent.left = rep;
+    else node.parent.right = rep;
+    if (rep != null) rep.parent = node.parent;
+    return root;
+  }
+
+  /**
+   * Moves the pivot over its parent, the parent becomes its left child.
+   *
+   * @param root BST's root
+   * @param pivot Right child of its parent
+   * @return the root of the tree, the pivot if its parent was the root
+   */
   public static FastBST rotateLeft(FastBST root, FastBST pivot) {
     FastBST parent = pivot.parent;
     parent.right = pivot.left;
+    if (pivot.left != null) pivot.left.parent = parent;
+    root = transplant(root, parent, pivot);
     pivot.left = parent;
+    parent.parent = pivot;
     return root;
   }
 
+  /**
+   * Moves the pivot over its parent, the parent becomes its right child.
+   *
+   * @param root BST's root
+   * @param pivot Left child of its parent
+   * @return the root of the tree, the pivot if its parent was the root
+   */
   public static FastBST rotateRight(FastBST root, FastBST pivot) {
     FastBST parent = pivot.parent;
     parent.left = pivot.right;
+    if (pivot.right != null) pivot.right.parent = parent;
+    root = transplant(root, parent, pivot);
     pivot.right = parent;
+    parent.parent = pivot;
     return root;
   }
 
+  /**
+   * Builds a perfectly balanced tree from sorted keys in <tt>O(n)</tt>, the middle key
+   * of every range becomes the root of its subtree.
+   * The nodes of the last level are red, so the result is also a valid red-black tree
+   * for insertBalanced and removeBalanced.
+   *
+   * @param keys strictly increasing keys
+   * @return the root of the new tree, null if there are no keys
+   * @throws IllegalArgumentException if the keys are not strictly increasing
+   */
+  public static FastBST fromSorted(int[] keys) {
+    Misc.checkSorted(keys, keys.length);
+    int maxDepth = 31 - Integer.numberOfLeadingZeros(keys.length);
+    return build(keys, 0, keys.length, null, 0, maxDepth);
+  }
+
+  /**
+   * Builds a perfectly balanced tree from keys in any order, sorting them in parallel
+   * first. Repeated keys are kept once.
+   *
+   * @param keys the keys of the tree
+   * @return the root of the new tree, null if there are no keys
+   */
+  public static FastBST fromUnsorted(int[] keys) {
+    return fromSorted(Misc.sortedUnique(keys));
+  }
+
+  /**
+   * Merges two trees into a new balanced one in linear time, by merging their in-order
+   * walks. Both trees are left unchanged.
+   *
+   * @param a root of a tree, may be null
+   * @param b root of a tree, may be null
+   * @return the root of the new tree, null if both are empty
+   */
+  public static FastBST merge(FastBST a, FastBST b) {
+    return fromSorted(Misc.mergeSorted(toArray(a), toArray(b)));
+  }
+
+  // Builds the subtree of keys[from, to) below parent
+  private static FastBST build(int[] keys, int from, int to, FastBST parent, int depth, int maxDepth) {
+    if (from >= to) return null;
+    int mid = (from + to) >>> 1;
+    FastBST node = new FastBST(keys[mid], null, null, parent);
+    node.red = depth == maxDepth && depth > 0;
+    node.left = build(keys, from, mid, node, depth + 1, maxDepth);
+    node.right = build(keys, mid + 1, to, node, depth + 1, maxDepth);
+    return node;
+  }
+
+  /**
+   * Returns the labels of a tree in increasing order.
+   *
+   * @param root BST's root, null for an empty tree
+   * @return the sorted labels
+   */
+  public static int[] toArray(FastBST root) {
+    int[] sorted = new int[16];
+    int size = 0;
+    ArrayDeque<FastBST> stack = new ArrayDeque<>();
+    FastBST cNode = root;
+    while (cNode != null || !stack.isEmpty()) {
+      while (cNode != null) {
+        stack.addFirst(cNode);
+        cNode = cNode.left;
+      }
+      cNode = stack.removeFirst();
+      if (size == sorted.length) sorted = Arrays.copyOf(sorted, size * 2);
+      sorted[size++] = cNode.label;
+      cNode = cNode.right;
+    }
+    return Arrays.copyOf(sorted, size);
+  }
+
   public Iterable<FastBST> preorderIterator() {
     return new Iterable<FastBST>() {
       public Iterator<FastBST> iterator() {
@@ -139,6 +394,18 @@ public class FastBST {
     };
   }
 
+  /**
+   * Copies the labels of a tree into an immutable {@link FrozenBST}, which searches
+   * faster than walking the nodes. Later changes to the tree are not reflected.
+   *
+   * @param root BST's root, null for an empty tree
+   * @return the frozen tree
+   */
+  public static FrozenBST freeze(FastBST root) {
+    int[] sorted = toArray(root);
+    return FrozenBST.of(sorted, sorted.length);
+  }
+
   public static void preOrder(FastBST root) {
     for (FastBST e : root.preorderIterator()) {
       // Test function
@@ -131,6 +131,76 @@ public class FastBSTp {
     return root;
   }
 
+  /**
+   * Builds a perfectly balanced tree from sorted keys in <tt>O(n)</tt>, the middle key
+   * of every range becomes the root of its subtree.
+   *
+   * @param keys strictly increasing keys
+   * @return the root of the new tree, null if there are no keys
+   * @throws IllegalArgumentException if the keys are not strictly increasing
+   */
+  public static FastBSTp fromSorted(int[] keys) {
+    Misc.checkSorted(keys, keys.length);
+    return build(keys, 0, keys.length, null);
+  }
+
+  /**
+   * Builds a perfectly balanced tree from keys in any order, sorting them in parallel
+   * first. Repeated keys are kept once.
+   *
+   * @param keys the keys of the tree
+   * @return the root of the new tree, null if there are no keys
+   */
+  public static FastBSTp fromUnsorted(int[] keys) {
+    return fromSorted(Misc.sortedUnique(keys));
+  }
+
+  /**
+   * Merges two trees into a new balanced one in linear time, by merging their in-order
+   * walks. Both trees are left unchanged.
+   *
+   * @param a root of a tree, may be null
+   * @param b root of a tree, may be null
+   * @return the root of the new tree, null if both are empty
+   */
+  public static FastBSTp merge(FastBSTp a, FastBSTp b) {
+    return fromSorted(Misc.mergeSorted(toArray(a), toArray(b)));
+  }
+
+  // Builds the subtree of keys[from, to) below parent
+  private static FastBSTp build(int[] keys, int from, int to, FastBSTp parent) {
+    if (from >= to) return null;
+    int mid = (from + to) >>> 1;
+    FastBSTp node = new FastBSTp(keys[mid], null, null, parent);
+    node.left = build(keys, from, mid, node);
+    node.right = build(keys, mid + 1, to, node);
+    return node;
+  }
+
+  /**
+   * Returns the labels of a tree in increasing order.
+   *
+   * @param root BST's root, null for an empty tree
+   * @return the sorted labels
+   */
+  public static int[] toArray(FastBSTp root) {
+    int[] sorted = new int[16];
+    int size = 0;
+    ArrayDeque<FastBSTp> stack = new ArrayDeque<>();
+    FastBSTp cNode = root;
+    while (cNode != null || !stack.isEmpty()) {
+      while (cNode != null) {
+        stack.addFirst(cNode);
+        cNode = cNode.left;
+      }
+      cNode = stack.removeFirst();
+      if (size == sorted.length) sorted = Arrays.copyOf(sorted, size * 2);
+      sorted[size++] = cNode.label;
+      cNode = cNode.right;
+    }
+    return Arrays.copyOf(sorted, size);
+  }
+
   public static void preOrder(FastBSTp root) {
     ArrayDeque<FastBSTp> queue = new ArrayDeque<>();
     queue.addLast(root);
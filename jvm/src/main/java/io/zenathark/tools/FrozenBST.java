@@ -0,0 +1,99 @@
+package io.zenathark.tools;
+
+import java.util.*;
+
+/**
+ * Immutable sorted int set stored on a single array in Eytzinger order.
+ *
+ * <p>The keys are laid out as a complete binary tree in BFS order: the children of
+ * slot <tt>k</tt> are at <tt>2k</tt> and <tt>2k + 1</tt>, slot 0 is unused. The first
+ * levels of every search share the same few cache lines, and a descent is a chain of
+ * index computations instead of dependent pointer loads, which the CPU can run ahead
+ * of. The search loop has no data dependent branch, the comparison result is added to
+ * the next index.
+ *
+ * <p>Instances are created with {@link FastBST#freeze(FastBST)}, {@code IntBST.freeze()}
+ * or from a sorted array, and can be shared between threads.
+ */
+public final class FrozenBST {
+  /** Keys on Eytzinger order, from index 1 */
+  final int[] keys;
+  private final int size;
+
+  private FrozenBST(int[] keys, int size) {
+    this.keys = keys;
+    this.size = size;
+  }
+
+  /**
+   * Builds a frozen tree from the first keys of a sorted array.
+   *
+   * @param sorted strictly increasing keys
+   * @param size number of keys to take
+   * @return a new frozen tree
+   * @throws IllegalArgumentException if the keys are not strictly increasing
+   */
+  public static FrozenBST of(int[] sorted, int size) {
+    Misc.checkSorted(sorted, size);
+    int[] keys = new int[size + 1];
+    fill(keys, sorted, 0, 1);
+    return new FrozenBST(keys, size);
+  }
+
+  // In-order walk of the implicit tree, assigning sorted keys; returns the next key
+  private static int fill(int[] keys, int[] sorted, int i, int k) {
+    if (k < keys.length) {
+      i = fill(keys, sorted, i, 2 * k);
+      keys[k] = sorted[i++];
+      i = fill(keys, sorted, i, 2 * k + 1);
+    }
+    return i;
+  }
+
+  /**
+   * Looks for a key.
+   *
+   * @param val the key to look for
+   * @return the slot holding the key, -1 if it is not on the tree
+   */
+  public int search(int val) {
+    final int[] keys = this.keys;
+    final int n = size;
+    int k = 1;
+    while (k <= n)
+      k = 2 * k + (keys[k] < val ? 1 : 0);
+    // Drop the right turns taken after the last left turn, k is the smallest key >= val
+    k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+    return k != 0 && keys[k] == val ? k : -1;
+  }
+
+  public boolean contains(int val) {
+    return search(val) >= 0;
+  }
+
+  /** Key held by a slot */
+  public int get(int slot) {
+    return keys[slot];
+  }
+
+  /** Number of keys */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the keys in increasing order */
+  public int[] toArray() {
+    int[] sorted = new int[size];
+    collect(sorted, 0, 1);
+    return sorted;
+  }
+
+  private int collect(int[] sorted, int i, int k) {
+    if (k <= size) {
+      i = collect(sorted, i, 2 * k);
+      sorted[i++] = keys[k];
+      i = collect(sorted, i, 2 * k + 1);
+    }
+    return i;
+  }
+}
@@ -0,0 +1,19 @@
+package io.zenathark.tools;
+
+/**
+ * Receives the matches of an Aho-Corasick scan.
+ *
+ * <p>Matches are reported as primitive triples so scanning does not allocate any
+ * object per match. Pattern ids are given in insertion order of the dictionary.
+ */
+@FunctionalInterface
+public interface MatchHandler {
+  /**
+   * Called once per match.
+   *
+   * @param patternId id of the matched pattern
+   * @param start first position of the match on the text, inclusive
+   * @param end last position of the match on the text, exclusive
+   */
+  void onMatch(int patternId, int start, int end);
+}
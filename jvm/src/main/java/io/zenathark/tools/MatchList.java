@@ -0,0 +1,79 @@
+package io.zenathark.tools;
+
+import java.util.*;
+
+/**
+ * Growable buffer of matches stored as primitive triples.
+ *
+ * <p>Works as a {@link MatchHandler} that keeps every match on a single <tt>int</tt>
+ * array, <tt>data[3 * i]</tt> holds the pattern id, <tt>data[3 * i + 1]</tt> the start
+ * and <tt>data[3 * i + 2]</tt> the end of the <tt>i</tt>-th match. The buffer can be
+ * cleared and reused so scanning in a loop does not allocate once it has grown.
+ */
+public class MatchList implements MatchHandler {
+  static final int STRIDE = 3;
+
+  /** Number of stored matches */
+  public int size;
+  /** Internal storage, see the class description for the layout */
+  public int[] data;
+
+  public MatchList() {
+    this(16);
+  }
+
+  public MatchList(int capacity) {
+    if (capacity < 0)
+      throw new IllegalArgumentException(String.format("Illegal Capacity: %d", capacity));
+    data = new int[capacity * STRIDE];
+  }
+
+  @Override
+  public void onMatch(int patternId, int start, int end) {
+    ensureCapacity(size + 1);
+    int i = size++ * STRIDE;
+    data[i] = patternId;
+    data[i + 1] = start;
+    data[i + 2] = end;
+  }
+
+  /** Appends all the matches of another list. */
+  public MatchList addAll(MatchList other) {
+    ensureCapacity(size + other.size);
+    System.arraycopy(other.data, 0, data, size * STRIDE, other.size * STRIDE);
+    size += other.size;
+    return this;
+  }
+
+  public int patternId(int i) {
+    return data[i * STRIDE];
+  }
+
+  public int start(int i) {
+    return data[i * STRIDE + 1];
+  }
+
+  public int end(int i) {
+    return data[i * STRIDE + 2];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Removes all the matches, keeping the storage. */
+  public MatchList clear() {
+    size = 0;
+    return this;
+  }
+
+  final void ensureCapacity(int minCapacity) {
+    int oldCapacity = data.length / STRIDE;
+    if (minCapacity > oldCapacity) {
+      int newCapacity = (oldCapacity * 3) / 2 + 1;
+      if (newCapacity < minCapacity)
+        newCapacity = minCapacity;
+      data = Arrays.copyOf(data, newCapacity * STRIDE);
+    }
+  }
+}
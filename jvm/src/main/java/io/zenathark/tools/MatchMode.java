@@ -0,0 +1,18 @@
+package io.zenathark.tools;
+
+/** Selects which occurrences of a dictionary are reported by a scan. */
+public enum MatchMode {
+  /** Every occurrence, including overlapping ones. */
+  ALL,
+  /**
+   * Non-overlapping occurrences. Among the matches starting at the leftmost position
+   * the longest one is reported, then the scan resumes after its end.
+   */
+  LEFTMOST_LONGEST,
+  /**
+   * Non-overlapping occurrences. Among the matches starting at the leftmost position
+   * the pattern added first to the dictionary is reported, then the scan resumes after
+   * its end.
+   */
+  LEFTMOST_FIRST
+}
@@ -1,7 +1,47 @@
 package io.zenathark.tools;
 
+import java.util.Arrays;
+
 public class Misc {
   public static String Sprintf(String format, Object... args) {
     return String.format(format, args);
   }
+
+  /**
+   * Checks that the first keys of an array are strictly increasing.
+   *
+   * @throws IllegalArgumentException if they are not
+   */
+  public static void checkSorted(int[] keys, int size) {
+    for (int i = 1; i < size; i++)
+      if (keys[i - 1] >= keys[i])
+        throw new IllegalArgumentException(String.format("Keys are not sorted at %d", i));
+  }
+
+  /** Returns a sorted copy of the keys without repeated values, sorted in parallel. */
+  public static int[] sortedUnique(int[] keys) {
+    int[] sorted = Arrays.copyOf(keys, keys.length);
+    Arrays.parallelSort(sorted);
+    int n = 0;
+    for (int i = 0; i < sorted.length; i++)
+      if (n == 0 || sorted[n - 1] != sorted[i]) sorted[n++] = sorted[i];
+    return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+  }
+
+  /** Merges two strictly increasing arrays into one, keeping a single copy of repeated keys. */
+  public static int[] mergeSorted(int[] a, int[] b) {
+    int[] merged = new int[a.length + b.length];
+    int i = 0, j = 0, n = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) merged[n++] = a[i++];
+      else if (a[i] > b[j]) merged[n++] = b[j++];
+      else {
+        merged[n++] = a[i++];
+        j++;
+      }
+    }
+    while (i < a.length) merged[n++] = a[i++];
+    while (j < b.length) merged[n++] = b[j++];
+    return n == merged.length ? merged : Arrays.copyOf(merged, n);
+  }
 }
@@ -0,0 +1,104 @@
+package io.zenathark.tools;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Parallel scan of large texts with a shared {@link DoubleArrayACTree}.
+ *
+ * <p>The text is split into chunks scanned on a {@link ForkJoinPool}. Every chunk
+ * starts scanning <tt>maxLength - 1</tt> characters before its first position so the
+ * automaton reaches the same state the sequential scan would have, and only keeps the
+ * matches ending inside the chunk. Hence every match is found by exactly one chunk
+ * and the concatenation of the chunks, on order, equals the sequential result.
+ */
+public class ParallelACScanner {
+  static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  final DoubleArrayACTree automaton;
+  final ForkJoinPool pool;
+  final int chunkSize;
+  final int overlap;
+
+  public ParallelACScanner(DoubleArrayACTree automaton) {
+    this(automaton, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param automaton compiled dictionary, shared by all the tasks
+   * @param pool pool running the chunks
+   * @param chunkSize number of characters per chunk
+   * @throws IllegalArgumentException if <tt>chunkSize</tt> is not positive
+   */
+  public ParallelACScanner(DoubleArrayACTree automaton, ForkJoinPool pool, int chunkSize) {
+    if (chunkSize <= 0)
+      throw new IllegalArgumentException(String.format("Illegal chunk size: %d", chunkSize));
+    this.automaton = automaton;
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+    int maxLength = 0;
+    for (int length : automaton.lengths) maxLength = Math.max(maxLength, length);
+    this.overlap = Math.max(0, maxLength - 1);
+  }
+
+  /**
+   * Reports all the (overlapping) occurrences of the dictionary on a slice of a text,
+   * in the same order as {@link DoubleArrayACTree#scan(char[], int, int, MatchHandler)}.
+   *
+   * @param text input text, it must not be modified during the scan
+   * @param from first position to scan, inclusive
+   * @param to last position to scan, exclusive
+   * @return all the matches
+   */
+  public MatchList scan(char[] text, int from, int to) {
+    return pool.invoke(new ScanTask(text, from, from, to));
+  }
+
+  public MatchList scan(char[] text) {
+    return scan(text, 0, text.length);
+  }
+
+  class ScanTask extends RecursiveTask<MatchList> {
+    private static final long serialVersionUID = 1L;
+
+    final char[] text;
+    final int lower;
+    final int from;
+    final int to;
+
+    ScanTask(char[] text, int lower, int from, int to) {
+      this.text = text;
+      this.lower = lower;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected MatchList compute() {
+      if (to - from <= chunkSize) return scanChunk();
+      int middle = from + (to - from) / 2;
+      ScanTask right = new ScanTask(text, lower, middle, to);
+      right.fork();
+      MatchList ans = new ScanTask(text, lower, from, middle).compute();
+      return ans.addAll(right.join());
+    }
+
+    private MatchList scanChunk() {
+      final int[] output = automaton.output;
+      final int[] link = automaton.link;
+      final int[] extra = automaton.extra;
+      final int[] extraIds = automaton.extraIds;
+      final int[] depth = automaton.depth;
+      MatchList ans = new MatchList();
+      int state = DoubleArrayACTree.ROOT;
+      for (int i = Math.max(lower, from - overlap); i < to; i++) {
+        state = automaton.next(state, text[i]);
+        if (i < from) continue;
+        for (int t = output[state] >= 0 ? state : link[state]; t != DoubleArrayACTree.ROOT; t = link[t])
+          for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+            ans.onMatch(o, i + 1 - depth[t], i + 1);
+      }
+      return ans;
+    }
+  }
+}
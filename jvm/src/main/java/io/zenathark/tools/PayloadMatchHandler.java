@@ -0,0 +1,20 @@
+package io.zenathark.tools;
+
+/**
+ * Receives the matches of an Aho-Corasick scan along with the payload of the pattern.
+ *
+ * <p>Same as {@link MatchHandler}, the payload given when the pattern was added is
+ * read from a primitive array of the automaton, so no map lookup is needed per match.
+ */
+@FunctionalInterface
+public interface PayloadMatchHandler {
+  /**
+   * Called once per match.
+   *
+   * @param patternId id of the matched pattern
+   * @param payload payload of the matched pattern, 0 if none was given
+   * @param start first position of the match on the text, inclusive
+   * @param end last position of the match on the text, exclusive
+   */
+  void onMatch(int patternId, long payload, int start, int end);
+}
@@ -0,0 +1,19 @@
+package io.zenathark.tools;
+
+/**
+ * Receives the matches of a streaming Aho-Corasick scan.
+ *
+ * <p>Same as {@link MatchHandler} but positions are absolute offsets from the
+ * beginning of the stream, so they are given as <tt>long</tt>.
+ */
+@FunctionalInterface
+public interface StreamMatchHandler {
+  /**
+   * Called once per match.
+   *
+   * @param patternId id of the matched pattern
+   * @param start first offset of the match on the stream, inclusive
+   * @param end last offset of the match on the stream, exclusive
+   */
+  void onMatch(int patternId, long start, long end);
+}
@@ -0,0 +1,180 @@
+package io.zenathark.tools;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+
+/**
+ * Streaming matcher over a {@link DoubleArrayACTree}.
+ *
+ * <p>The automaton state is kept between calls, so a text can be fed in chunks and
+ * matches crossing chunk boundaries are still reported. Offsets are absolute from
+ * the first character fed after creation or {@link #reset()}. Readers and channels
+ * are consumed through buffers allocated once per matcher, hence memory does not
+ * depend on the size of the input.
+ *
+ * <p>The automaton can be shared, but a matcher holds the scan state and must be
+ * used by a single thread.
+ */
+public class StreamingACMatcher {
+  static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+  static final int MIN_BUFFER_SIZE = 16;
+
+  final DoubleArrayACTree automaton;
+  private final char[] chars;
+  private ByteBuffer bytes;
+  private int state;
+  private long position;
+
+  public StreamingACMatcher(DoubleArrayACTree automaton) {
+    this(automaton, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param automaton compiled dictionary
+   * @param bufferSize size in chars of the read buffer, and in bytes of the
+   *   decoding buffer for channels
+   * @throws IllegalArgumentException if <tt>bufferSize</tt> is less than 16
+   */
+  public StreamingACMatcher(DoubleArrayACTree automaton, int bufferSize) {
+    if (bufferSize < MIN_BUFFER_SIZE)
+      throw new IllegalArgumentException(String.format("Illegal buffer size: %d", bufferSize));
+    this.automaton = automaton;
+    this.chars = new char[bufferSize];
+    reset();
+  }
+
+  /** Moves the matcher back to the root state and offset 0. */
+  public StreamingACMatcher reset() {
+    state = DoubleArrayACTree.ROOT;
+    position = 0;
+    return this;
+  }
+
+  /** Number of characters consumed since creation or the last reset. */
+  public long position() {
+    return position;
+  }
+
+  /**
+   * Feeds the next chunk of the stream.
+   *
+   * @param chunk characters of the stream
+   * @param from first position of the chunk, inclusive
+   * @param to last position of the chunk, exclusive
+   * @param handler receives every match ending on this chunk
+   * @return this instance
+   */
+  public StreamingACMatcher feed(char[] chunk, int from, int to, StreamMatchHandler handler) {
+    final int[] output = automaton.output;
+    final int[] link = automaton.link;
+    final int[] extra = automaton.extra;
+    final int[] extraIds = automaton.extraIds;
+    final int[] depth = automaton.depth;
+    int s = state;
+    long base = position - from;
+    for (int i = from; i < to; i++) {
+      s = automaton.next(s, chunk[i]);
+      for (int t = output[s] >= 0 ? s : link[s]; t != DoubleArrayACTree.ROOT; t = link[t]) {
+        long end = base + i + 1;
+        for (int o = output[t], k = extra[t]; o >= 0; o = extraIds[k++])
+          handler.onMatch(o, end - depth[t], end);
+      }
+    }
+    state = s;
+    position += to - from;
+    return this;
+  }
+
+  /**
+   * Feeds the remaining characters of a buffer. The buffer position is moved to
+   * its limit.
+   *
+   * @param buffer next chunk of the stream
+   * @param handler receives every match ending on this chunk
+   * @return this instance
+   */
+  public StreamingACMatcher feed(CharBuffer buffer, StreamMatchHandler handler) {
+    if (buffer.hasArray()) {
+      int from = buffer.arrayOffset() + buffer.position();
+      feed(buffer.array(), from, from + buffer.remaining(), handler);
+      buffer.position(buffer.limit());
+    } else {
+      while (buffer.hasRemaining()) {
+        int n = Math.min(buffer.remaining(), chars.length);
+        buffer.get(chars, 0, n);
+        feed(chars, 0, n, handler);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Scans a reader until its end. The reader is not closed.
+   *
+   * @param reader input stream
+   * @param handler receives every match
+   * @return this instance
+   * @throws IOException if the reader fails
+   */
+  public StreamingACMatcher scan(Reader reader, StreamMatchHandler handler) throws IOException {
+    int n;
+    while ((n = reader.read(chars, 0, chars.length)) >= 0)
+      feed(chars, 0, n, handler);
+    return this;
+  }
+
+  /**
+   * Scans a channel until its end, decoding it with the given charset. Malformed
+   * and unmappable input is replaced by the charset replacement. The channel is not
+   * closed.
+   *
+   * @param channel input stream
+   * @param charset encoding of the channel
+   * @param handler receives every match
+   * @return this instance
+   * @throws IOException if the channel fails
+   */
+  public StreamingACMatcher scan(ReadableByteChannel channel, Charset charset,
+                                 StreamMatchHandler handler) throws IOException {
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    if (bytes == null)
+      bytes = ByteBuffer.allocateDirect(chars.length);
+    bytes.clear();
+    CharBuffer out = CharBuffer.wrap(chars);
+    boolean eof = false;
+    while (!eof) {
+      eof = channel.read(bytes) < 0;
+      bytes.flip();
+      decode(decoder, out, eof, handler);
+      bytes.compact();
+    }
+    while (decoder.flush(out) == CoderResult.OVERFLOW)
+      drain(out, handler);
+    drain(out, handler);
+    return this;
+  }
+
+  private void decode(CharsetDecoder decoder, CharBuffer out, boolean eof,
+                      StreamMatchHandler handler) throws CharacterCodingException {
+    while (true) {
+      CoderResult result = decoder.decode(bytes, out, eof);
+      if (result.isOverflow()) {
+        drain(out, handler);
+      } else if (result.isUnderflow()) {
+        drain(out, handler);
+        return;
+      } else {
+        result.throwException();
+      }
+    }
+  }
+
+  private void drain(CharBuffer out, StreamMatchHandler handler) {
+    feed(chars, 0, out.position(), handler);
+    out.clear();
+  }
+}
@@ -0,0 +1,41 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+/**
+ * Time to build the Aho-Corasick Tries across dictionary sizes and alphabets. Run
+ * with <tt>-prof gc</tt> to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 60, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ACBuildBenchmark {
+  @Param(Array("1000", "10000", "100000"))
+  var words: Int = _
+  @Param(Array("2", "4", "26"))
+  var alphabet: Int = _
+
+  var dictionary: Array[String] = _
+
+  @Setup
+  def initTrees(): Unit = dictionary = ACCorpus.dictionary(words, alphabet)
+
+  @Benchmark
+  def ahoCorasick: AhoCorasickTree = {
+    val t = new AhoCorasickTree()
+    dictionary.foreach(w => t.addWord(w))
+    t
+  }
+
+  @Benchmark
+  def fast: FastACTree = {
+    val t = new FastACTree()
+    dictionary.foreach(w => t.addWord(w))
+    t
+  }
+}
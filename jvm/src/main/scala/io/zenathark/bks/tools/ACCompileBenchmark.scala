@@ -0,0 +1,52 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+/**
+ * Time to compile the Aho-Corasick Tries across dictionary sizes and alphabets, on a
+ * fresh Trie per invocation. Run with <tt>-prof gc</tt> to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 60, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ACCompileBenchmark {
+  @Param(Array("1000", "10000", "100000"))
+  var words: Int = _
+  @Param(Array("2", "4", "26"))
+  var alphabet: Int = _
+
+  var dictionary: Array[String] = _
+  var ahoCorasickTree: AhoCorasickTree = _
+  var fastTree: FastACTree = _
+
+  @Setup
+  def initTrees(): Unit = dictionary = ACCorpus.dictionary(words, alphabet)
+
+  @Setup(Level.Invocation)
+  def buildTrees(): Unit = {
+    ahoCorasickTree = new AhoCorasickTree()
+    fastTree = new FastACTree()
+    dictionary.foreach { w =>
+      ahoCorasickTree.addWord(w)
+      fastTree.addWord(w)
+    }
+  }
+
+  @Benchmark
+  def ahoCorasick: AhoCorasickTree = ahoCorasickTree.compile()
+
+  // compile() and the double-array layout
+  @Benchmark
+  def ahoCorasickFreeze: DoubleArrayACTree = ahoCorasickTree.freeze()
+
+  @Benchmark
+  def fast: FastACTree = fastTree.compile()
+
+  @Benchmark
+  def fastDeterministic: FastACTree = fastTree.compile(true)
+}
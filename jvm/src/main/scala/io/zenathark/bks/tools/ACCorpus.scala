@@ -0,0 +1,34 @@
+package io.zenathark.bks.tools
+
+import scala.util.Random
+
+/**
+ * Reproducible dictionaries and texts for the Aho-Corasick benchmarks.
+ *
+ * Dictionary words are drawn over the first <tt>alphabet</tt> lowercase letters, so
+ * the alphabet size controls the branching of the Trie. Texts are random lowercase
+ * letters where dictionary words are planted until they cover <tt>density</tt>
+ * percent of the text; random matches add on top of those, mostly on the small
+ * alphabets. Every call with the same arguments returns the same data.
+ */
+object ACCorpus {
+  val SEED = 42L
+
+  def dictionary(words: Int, alphabet: Int): Array[String] = {
+    val random = new Random(SEED + words * 31 + alphabet)
+    Array.fill(words)(Array.fill(5 + random.nextInt(8))(('a' + random.nextInt(alphabet)).toChar).mkString)
+  }
+
+  def text(length: Int, dictionary: Array[String], density: Int): Array[Char] = {
+    val random = new Random(SEED + length * 31 + density)
+    val text = Array.fill(length)(('a' + random.nextInt(26)).toChar)
+    var planted = 0L
+    while (planted * 100 < length.toLong * density) {
+      val word = dictionary(random.nextInt(dictionary.length))
+      val at = random.nextInt(length - word.length)
+      word.getChars(0, word.length, text, at)
+      planted += word.length
+    }
+    text
+  }
+}
@@ -0,0 +1,70 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Scan throughput of several threads reading a dictionary from the registry while
+ * another thread keeps publishing new versions of it.
+ */
+@State(Scope.Group)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class ACRegistryBenchmark {
+  val WORDS = 10000
+  val TEXT = 4096
+  val NAME = "blocklist"
+  val registry = new ACRegistry()
+  var versions: Array[DoubleArrayACTree] = _
+  var text: Array[Char] = _
+  var swaps = 0
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    versions = Array.fill(2) {
+      val tree = new AhoCorasickTree()
+      for (_ <- 0 until WORDS)
+        tree.addWord(Array.fill(3 + random.nextInt(6))(('a' + random.nextInt(26)).toChar))
+      tree.freeze()
+    }
+    registry.publish(NAME, versions(0))
+    text = Array.fill(TEXT)(('a' + random.nextInt(26)).toChar)
+  }
+
+  @Benchmark
+  @Group("swapping")
+  @GroupThreads(3)
+  def scan(counter: Counter): Long = {
+    registry.scan(NAME, text, 0, text.length, counter)
+    counter.matches
+  }
+
+  @Benchmark
+  @Group("swapping")
+  @GroupThreads(1)
+  def swap: DoubleArrayACTree = {
+    swaps += 1
+    registry.publish(NAME, versions(swaps & 1))
+  }
+
+  @Benchmark
+  @Group("baseline")
+  @GroupThreads(3)
+  def scanOnly(counter: Counter): Long = {
+    registry.scan(NAME, text, 0, text.length, counter)
+    counter.matches
+  }
+}
+
+@State(Scope.Thread)
+class Counter extends MatchHandler {
+  var matches = 0L
+  override def onMatch(patternId: Int, start: Int, end: Int): Unit = matches += 1
+}
@@ -0,0 +1,88 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+import io.zenathark.tools._
+
+/**
+ * Scan throughput of the Aho-Corasick engines across dictionary sizes, hit densities
+ * and alphabets, see {@link ACCorpus} for the generated corpora. An operation is one
+ * input character, so the scores are millions of characters per second (twice that
+ * in MB/s of UTF-16). Run with <tt>-prof gc</tt> to get the allocation rate, the
+ * tokenizer boxes the input and allocates per match while the other scans should
+ * not allocate at all.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class ACScanBenchmark {
+  val TEXT = 1 << 20
+
+  @Param(Array("1000", "10000", "100000"))
+  var words: Int = _
+  @Param(Array("0", "1", "10"))
+  var density: Int = _
+  @Param(Array("2", "4", "26"))
+  var alphabet: Int = _
+
+  var text: Array[Char] = _
+  var boxedText: Array[Character] = _
+  val ahoCorasick = new AhoCorasickTree()
+  var doubleArray: DoubleArrayACTree = _
+  val fast = new FastACTree()
+  val fastDeterministic = new FastACTree()
+  var checksum: Long = 0
+  val handler: MatchHandler = (patternId: Int, start: Int, end: Int) => checksum += patternId + end
+
+  @Setup
+  def initTrees(): Unit = {
+    val dictionary = ACCorpus.dictionary(words, alphabet)
+    text = ACCorpus.text(TEXT, dictionary, density)
+    boxedText = AhoCorasickTree.toObject(text)
+    for (w <- dictionary) {
+      ahoCorasick.addWord(w)
+      fast.addWord(w)
+      fastDeterministic.addWord(w)
+    }
+    doubleArray = ahoCorasick.freeze()
+    fast.compile()
+    fastDeterministic.compile(true)
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 20)
+  def ahoCorasickTokenizer(blackhole: Blackhole): Unit = {
+    val it = ahoCorasick.iterator(boxedText)
+    while (it.hasNext) blackhole.consume(it.next)
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 20)
+  def ahoCorasickScan: Long = {
+    ahoCorasick.scan(text, 0, text.length, handler)
+    checksum
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 20)
+  def doubleArrayCount: Int = doubleArray.count(text, 0, text.length)
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 20)
+  def fastScan: Long = {
+    fast.scan(text, 0, text.length, handler)
+    checksum
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 20)
+  def fastCount: Int = fast.count(text, 0, text.length)
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 20)
+  def fastDeterministicCount: Int = fastDeterministic.count(text, 0, text.length)
+}
@@ -0,0 +1,72 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Plain against red-black insertion on FastBST, for sorted and random keys, and the
+ * search on the resulting trees. Sorted keys turn the plain tree into a list, so the
+ * sizes are kept small enough for it to finish.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 60, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class BalancedBSTBenchmark {
+  @Param(Array("1000", "10000"))
+  var size: Int = _
+
+  var sorted: Array[Int] = _
+  var shuffled: Array[Int] = _
+  var plainSorted: FastBST = _
+  var balancedSorted: FastBST = _
+
+  @Setup
+  def initTrees(): Unit = {
+    sorted = Array.range(0, size)
+    shuffled = new Random(42).shuffle(sorted.toSeq).toArray
+    plainSorted = plain(sorted)
+    balancedSorted = balanced(sorted)
+  }
+
+  private def plain(keys: Array[Int]): FastBST = {
+    var root = FastBST.createRoot(keys(0))
+    for (i <- 1 until keys.length) root = FastBST.insert(root, keys(i))
+    root
+  }
+
+  private def balanced(keys: Array[Int]): FastBST = {
+    var root: FastBST = null
+    for (k <- keys) root = FastBST.insertBalanced(root, k)
+    root
+  }
+
+  private def searchAll(root: FastBST): Int = {
+    var found = 0
+    for (k <- shuffled) if (FastBST.search(root, k) != null) found += 1
+    found
+  }
+
+  @Benchmark
+  def plainSortedInsert: FastBST = plain(sorted)
+
+  @Benchmark
+  def balancedSortedInsert: FastBST = balanced(sorted)
+
+  @Benchmark
+  def plainRandomInsert: FastBST = plain(shuffled)
+
+  @Benchmark
+  def balancedRandomInsert: FastBST = balanced(shuffled)
+
+  @Benchmark
+  def plainSortedSearch: Int = searchAll(plainSorted)
+
+  @Benchmark
+  def balancedSortedSearch: Int = searchAll(balancedSorted)
+}
@@ -0,0 +1,61 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Many short messages scanned one by one with the tokenizer, one by one with the
+ * automaton, and as a single batch into a reused buffer.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class BatchACBenchmark {
+  val WORDS = 1000
+  val MESSAGES = 10000
+  val tree = new AhoCorasickTree()
+  var automaton: DoubleArrayACTree = _
+  var messages: Array[CharSequence] = _
+  var buffer: Array[Char] = _
+  var offsets: Array[Int] = _
+  val matches = new BatchMatchList()
+  var checksum: Long = 0
+  val handler: MatchHandler = (patternId: Int, start: Int, end: Int) => checksum += patternId + end
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    for (_ <- 0 until WORDS)
+      tree.addWord(Array.fill(3 + random.nextInt(4))(('a' + random.nextInt(26)).toChar))
+    automaton = tree.freeze()
+    messages = Array.fill(MESSAGES)(Array.fill(20 + random.nextInt(60))(('a' + random.nextInt(27)).toChar).mkString)
+    buffer = messages.mkString.toCharArray
+    offsets = messages.scanLeft(0)(_ + _.length).toArray
+  }
+
+  @Benchmark
+  def tokenizer(blackhole: Blackhole): Unit =
+    for (m <- messages) {
+      val it = tree.iterator(m.toString)
+      while (it.hasNext) blackhole.consume(it.next)
+    }
+
+  @Benchmark
+  def perMessage: Long = {
+    for (m <- messages) automaton.scan(m, handler)
+    checksum
+  }
+
+  @Benchmark
+  def batch: Int = automaton.scan(messages, 0, messages.length, matches).size
+
+  @Benchmark
+  def batchBuffer: Int = automaton.scan(buffer, offsets, messages.length, matches).size
+}
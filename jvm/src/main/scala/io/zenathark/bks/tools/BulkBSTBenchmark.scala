@@ -0,0 +1,89 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+import io.zenathark.primitives.IntBST
+
+import scala.util.Random
+
+/**
+ * Bulk construction of the BST family against inserting the keys one by one, and the
+ * linear merge of two trees against inserting the keys of one into the other.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 30, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class BulkBSTBenchmark {
+  @Param(Array("100000", "1000000"))
+  var size: Int = _
+
+  var sorted: Array[Int] = _
+  var shuffled: Array[Int] = _
+  var other: Array[Int] = _
+
+  @Setup
+  def initTrees(): Unit = {
+    sorted = Array.range(0, size)
+    val random = new Random(42)
+    shuffled = random.shuffle(sorted.toSeq).toArray
+    other = Array.fill(size)(random.nextInt(size * 2))
+  }
+
+  @Benchmark
+  def fastInsertBalanced: FastBST = {
+    var root: FastBST = null
+    for (k <- sorted) root = FastBST.insertBalanced(root, k)
+    root
+  }
+
+  @Benchmark
+  def fastFromSorted: FastBST = FastBST.fromSorted(sorted)
+
+  // Plain inserts in random order, sorted ones would build a list
+  @Benchmark
+  def fastInsertRandom: FastBST = {
+    var root = FastBST.createRoot(shuffled(0))
+    for (k <- shuffled) root = FastBST.insert(root, k)
+    root
+  }
+
+  @Benchmark
+  def fastFromUnsorted: FastBST = FastBST.fromUnsorted(shuffled)
+
+  @Benchmark
+  def fastpInsertRandom: FastBSTp = {
+    var root = FastBSTp.createRoot(shuffled(0))
+    for (k <- shuffled) root = FastBSTp.insert(root, k)
+    root
+  }
+
+  @Benchmark
+  def fastpFromUnsorted: FastBSTp = FastBSTp.fromUnsorted(shuffled)
+
+  @Benchmark
+  def intBSTPush: IntBST = {
+    val t = new IntBST(size)
+    sorted.foreach(k => t.push(k))
+    t
+  }
+
+  @Benchmark
+  def intBSTFromSorted: IntBST = IntBST.fromSorted(sorted)
+
+  @Benchmark
+  def intBSTFromUnsorted: IntBST = IntBST.fromUnsorted(shuffled)
+
+  @Benchmark
+  def fastMergeByInsert: FastBST = {
+    var root = FastBST.fromSorted(sorted)
+    for (k <- other) root = FastBST.insertBalanced(root, k)
+    root
+  }
+
+  @Benchmark
+  def fastMerge: FastBST = FastBST.merge(FastBST.fromSorted(sorted), FastBST.fromUnsorted(other))
+}
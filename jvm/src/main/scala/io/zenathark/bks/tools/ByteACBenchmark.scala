@@ -0,0 +1,78 @@
+package io.zenathark.bks.tools
+
+import java.io.{BufferedOutputStream, FileOutputStream}
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, StandardOpenOption}
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Scan of a memory mapped file with the byte automaton against decoding it into
+ * chars for the double-array automaton.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 60, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ByteACBenchmark {
+  val WORDS = 10000
+
+  @Param(Array("256"))
+  var megabytes: Int = _
+
+  var file: Path = _
+  var channel: FileChannel = _
+  var bytes: ByteACTree = _
+  var chars: DoubleArrayACTree = _
+  var checksum: Long = 0
+  val handler: StreamMatchHandler = (patternId: Int, start: Long, end: Long) => checksum += patternId + end
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    val words = Array.fill(WORDS)(Array.fill(3 + random.nextInt(6))(('a' + random.nextInt(26)).toChar).mkString)
+    bytes = new ByteACTree(words: _*)
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    chars = tree.freeze()
+
+    file = Files.createTempFile("aho-corasick", ".txt")
+    val out = new BufferedOutputStream(new FileOutputStream(file.toFile), 1 << 16)
+    val line = new StringBuilder
+    var written = 0L
+    while (written < megabytes.toLong * 1024 * 1024) {
+      line.clear()
+      for (_ <- 0 until 16) line.append(words(random.nextInt(WORDS))).append(' ')
+      val data = line.append('\n').toString.getBytes(StandardCharsets.UTF_8)
+      out.write(data)
+      written += data.length
+    }
+    out.close()
+    channel = FileChannel.open(file, StandardOpenOption.READ)
+  }
+
+  @TearDown
+  def deleteFile(): Unit = {
+    channel.close()
+    Files.delete(file)
+  }
+
+  @Benchmark
+  def mappedBytes: Long = {
+    bytes.scan(channel, handler)
+    checksum
+  }
+
+  @Benchmark
+  def decodedChars: Long = {
+    channel.position(0)
+    new StreamingACMatcher(chars).scan(channel, StandardCharsets.UTF_8, handler)
+    checksum
+  }
+}
@@ -0,0 +1,45 @@
+package io.zenathark.bks.tools
+
+import java.nio.file.{Files, Path}
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/** Startup time building the automaton from a word list against loading its image. */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 60, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.SingleShotTime))
+@Measurement(iterations = 10)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ColdStartBenchmark {
+  @Param(Array("100000", "300000"))
+  var size: Int = _
+
+  var words: Array[String] = _
+  var image: Path = _
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    words = Array.fill(size)(Array.fill(3 + random.nextInt(10))(('a' + random.nextInt(26)).toChar).mkString)
+    image = Files.createTempFile("aho-corasick", ".acda")
+    fromWordList.save(image)
+  }
+
+  @TearDown
+  def deleteImage(): Unit = Files.delete(image)
+
+  @Benchmark
+  def fromWordList: DoubleArrayACTree = {
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    tree.freeze()
+  }
+
+  @Benchmark
+  def fromImage: DoubleArrayACTree = DoubleArrayACTree.load(image)
+}
@@ -0,0 +1,61 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Build, compile and scan of the object Trie against the struct of arrays one. Run
+ * with <tt>-prof gc</tt> to compare the allocation of the builds.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class CompactACBenchmark {
+  @Param(Array("10000", "100000"))
+  var words: Int = _
+  val TEXT = 1 << 20
+
+  var dictionary: Array[Array[Char]] = _
+  var text: Array[Char] = _
+  var fast: FastACTree = _
+  var compact: CompactACTree = _
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    dictionary = Array.fill(words)(Array.fill(4 + random.nextInt(8))(('a' + random.nextInt(26)).toChar))
+    text = Array.fill(TEXT)(('a' + random.nextInt(26)).toChar)
+    fast = buildFast().compile()
+    compact = buildCompact().compile()
+  }
+
+  private def buildFast(): FastACTree = {
+    val t = new FastACTree()
+    dictionary.foreach(w => t.addWord(w))
+    t
+  }
+
+  private def buildCompact(): CompactACTree = {
+    val t = new CompactACTree()
+    dictionary.foreach(w => t.addWord(w))
+    t
+  }
+
+  @Benchmark
+  def fastBuild: FastACTree = buildFast().compile()
+
+  @Benchmark
+  def compactBuild: CompactACTree = buildCompact().compile()
+
+  @Benchmark
+  def fastScan: Int = fast.count(text, 0, text.length)
+
+  @Benchmark
+  def compactScan: Int = compact.count(text, 0, text.length)
+}
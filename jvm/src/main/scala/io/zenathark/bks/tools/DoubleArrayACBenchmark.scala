@@ -0,0 +1,88 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+import io.zenathark.tools._
+
+import scala.util.Random
+
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class DoubleArrayACBenchmark {
+  val WORDS = 10000
+  val TEXT = 100000
+  val tree = new AhoCorasickTree()
+  var automaton: DoubleArrayACTree = _
+  var text: Array[Char] = _
+  var boxedText: Array[Character] = _
+  var checksum: Long = 0
+  val handler: MatchHandler = (patternId: Int, start: Int, end: Int) => checksum += patternId + end
+  val payloadHandler: PayloadMatchHandler =
+    (patternId: Int, payload: Long, start: Int, end: Int) => checksum += payload + end
+  val payloads = new java.util.HashMap[String, java.lang.Long]()
+  val mapHandler: MatchHandler =
+    (patternId: Int, start: Int, end: Int) => checksum += payloads.get(automaton.word(patternId)) + end
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    for (i <- 0 until WORDS) {
+      val word = Array.fill(3 + random.nextInt(6))(('a' + random.nextInt(26)).toChar)
+      tree.addWord(new String(word), i * 31L)
+      payloads.put(new String(word), i * 31L)
+    }
+    automaton = tree.freeze()
+    text = Array.fill(TEXT)(('a' + random.nextInt(26)).toChar)
+    boxedText = AhoCorasickTree.toObject(text)
+  }
+
+  @Benchmark
+  def tokenizer(blackhole: Blackhole): Unit = {
+    val it = tree.iterator(boxedText)
+    while (it.hasNext) blackhole.consume(it.next)
+  }
+
+  @Benchmark
+  def doubleArray: Int = automaton.count(text, 0, text.length)
+
+  @Benchmark
+  def scan: Long = {
+    automaton.scan(text, 0, text.length, handler)
+    checksum
+  }
+
+  @Benchmark
+  def payloadScan: Long = {
+    automaton.scan(text, 0, text.length, payloadHandler)
+    checksum
+  }
+
+  @Benchmark
+  def payloadMapLookup: Long = {
+    automaton.scan(text, 0, text.length, mapHandler)
+    checksum
+  }
+
+  @Benchmark
+  def treeScan: Long = {
+    tree.scan(text, 0, text.length, handler)
+    checksum
+  }
+
+  @Benchmark
+  def leftmostLongest: Long = {
+    automaton.scan(text, 0, text.length, MatchMode.LEFTMOST_LONGEST, handler)
+    checksum
+  }
+
+  @Benchmark
+  def leftmostFirst: Long = {
+    automaton.scan(text, 0, text.length, MatchMode.LEFTMOST_FIRST, handler)
+    checksum
+  }
+}
@@ -0,0 +1,58 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+/**
+ * Per character latency of the fail-link automaton against the deterministic one.
+ * The input is <tt>a^depth b</tt> repeated, so every <tt>b</tt> makes the fail-link
+ * automaton fall through the whole <tt>a^depth</tt> branch.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class FastACTreeDFABenchmark {
+  val TEXT = 1 << 16
+
+  @Param(Array("4", "64", "1024"))
+  var depth: Int = _
+
+  val nfa = new FastACTree()
+  val dfa = new FastACTree()
+  val alphabetNfa = new AlphabetACTree()
+  val alphabetDfa = new AlphabetACTree()
+  var text: Array[Char] = _
+
+  @Setup
+  def initTrees(): Unit = {
+    val word = "a" * depth + "c"
+    for (t <- Seq(nfa, dfa)) t.addWord(word).addWord("b")
+    for (t <- Seq(alphabetNfa, alphabetDfa)) t.addWord(word).addWord("b")
+    nfa.compile(false)
+    dfa.compile(true)
+    alphabetNfa.compile(false)
+    alphabetDfa.compile(true)
+    val block = "a" * depth + "b"
+    text = (block * (TEXT / block.length + 1)).substring(0, TEXT).toCharArray
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def failLinks: Int = nfa.count(text, 0, text.length)
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def deterministic: Int = dfa.count(text, 0, text.length)
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def alphabetFailLinks: Int = alphabetNfa.count(text, 0, text.length)
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def alphabetDeterministic: Int = alphabetDfa.count(text, 0, text.length)
+}
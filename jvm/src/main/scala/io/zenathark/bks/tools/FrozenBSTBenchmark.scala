@@ -0,0 +1,79 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+import io.zenathark.primitives.IntBST
+
+import scala.util.Random
+
+/**
+ * Random lookups on the pointer trees against their frozen Eytzinger copies and a
+ * binary search over the sorted keys. Sizes go from a tree that fits on L1 (4 KB of
+ * keys) through L2 and L3 into RAM (64 MB of keys), an operation is one lookup.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = Array("-Xmx4g"))
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class FrozenBSTBenchmark {
+  val QUERIES = 1 << 16
+
+  @Param(Array("1024", "16384", "262144", "4194304", "16777216"))
+  var size: Int = _
+
+  var sorted: Array[Int] = _
+  var queries: Array[Int] = _
+  var fast: FastBST = _
+  var intBST: IntBST = _
+  var frozen: FrozenBST = _
+
+  @Setup
+  def initTrees(): Unit = {
+    // Even keys, so about half of the queries miss
+    sorted = Array.tabulate(size)(_ * 2)
+    val random = new Random(42)
+    queries = Array.fill(QUERIES)(random.nextInt(size * 2))
+    fast = null
+    intBST = new IntBST(size)
+    for (k <- sorted) {
+      fast = FastBST.insertBalanced(fast, k)
+      intBST.push(k)
+    }
+    frozen = FastBST.freeze(fast)
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def fastSearch: Int = {
+    var found = 0
+    for (q <- queries) if (FastBST.search(fast, q) != null) found += 1
+    found
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def intBSTSearch: Int = {
+    var found = 0
+    for (q <- queries) if (intBST.search(q) >= 0) found += 1
+    found
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def frozenSearch: Int = {
+    var found = 0
+    for (q <- queries) if (frozen.search(q) >= 0) found += 1
+    found
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def binarySearch: Int = {
+    var found = 0
+    for (q <- queries) if (java.util.Arrays.binarySearch(sorted, q) >= 0) found += 1
+    found
+  }
+}
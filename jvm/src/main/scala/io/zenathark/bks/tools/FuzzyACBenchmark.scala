@@ -0,0 +1,71 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Edit distance search on the Trie against computing the distance to every word.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class FuzzyACBenchmark {
+  @Param(Array("1000", "10000", "100000"))
+  var words: Int = _
+  @Param(Array("1", "2"))
+  var k: Int = _
+  val TOKENS = 100
+  val tree = new FastACTree()
+  var dictionary: Array[String] = _
+  var tokens: Array[String] = _
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    dictionary = Array.fill(words)(Array.fill(4 + random.nextInt(6))(('a' + random.nextInt(26)).toChar).mkString)
+    dictionary.foreach(w => tree.addWord(w))
+    // Half of the tokens are typos of dictionary words
+    tokens = Array.tabulate(TOKENS) { i =>
+      if (i % 2 == 0) Array.fill(4 + random.nextInt(6))(('a' + random.nextInt(26)).toChar).mkString
+      else {
+        val w = dictionary(random.nextInt(words)).toCharArray
+        w(random.nextInt(w.length)) = ('a' + random.nextInt(26)).toChar
+        new String(w)
+      }
+    }
+  }
+
+  @Benchmark
+  def trie(blackhole: Blackhole): Unit =
+    for (t <- tokens) tree.fuzzySearch(t, k, (word: String, distance: Int) => blackhole.consume(distance))
+
+  @Benchmark
+  def linear(blackhole: Blackhole): Unit =
+    for (t <- tokens; w <- dictionary) {
+      val distance = levenshtein(t, w)
+      if (distance <= k) blackhole.consume(distance)
+    }
+
+  private def levenshtein(a: String, b: String): Int = {
+    var prev = Array.tabulate(b.length + 1)(identity)
+    var row = new Array[Int](b.length + 1)
+    for (i <- 1 to a.length) {
+      row(0) = i
+      for (j <- 1 to b.length) {
+        val cost = if (a.charAt(i - 1) == b.charAt(j - 1)) 0 else 1
+        row(j) = math.min(prev(j - 1) + cost, math.min(prev(j), row(j - 1)) + 1)
+      }
+      val t = prev
+      prev = row
+      row = t
+    }
+    prev(b.length)
+  }
+}
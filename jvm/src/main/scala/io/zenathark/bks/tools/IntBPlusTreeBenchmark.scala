@@ -0,0 +1,74 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+import java.util.function.IntConsumer
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.primitives.{IntBPlusTree, IntBST}
+
+import scala.util.Random
+
+/**
+ * Lookups and range scans on the B+-tree against the AVL IntBST, over sets of up to
+ * tens of millions of keys. A range is about 1000 keys, summed through an IntConsumer.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = Array("-Xmx4g"))
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class IntBPlusTreeBenchmark {
+  val QUERIES = 1 << 12
+  val RANGE = 2000
+
+  @Param(Array("65536", "1048576", "16777216"))
+  var size: Int = _
+
+  var queries: Array[Int] = _
+  var bPlus: IntBPlusTree = _
+  var intBST: IntBST = _
+  var sum: Long = 0
+  val consumer: IntConsumer = (k: Int) => sum += k
+
+  @Setup
+  def initTrees(): Unit = {
+    // Even keys, so about half of the lookups miss
+    val sorted = Array.tabulate(size)(_ * 2)
+    val random = new Random(42)
+    queries = Array.fill(QUERIES)(random.nextInt(size * 2))
+    bPlus = IntBPlusTree.fromSorted(sorted, size)
+    intBST = new IntBST(size)
+    sorted.foreach(k => intBST.push(k))
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 12)
+  def bPlusContains: Int = {
+    var found = 0
+    for (q <- queries) if (bPlus.contains(q)) found += 1
+    found
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 12)
+  def intBSTContains: Int = {
+    var found = 0
+    for (q <- queries) if (intBST.contains(q)) found += 1
+    found
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 12)
+  def bPlusRange: Long = {
+    for (q <- queries) bPlus.range(q, q + RANGE, consumer)
+    sum
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 12)
+  def bPlusCount: Long = {
+    var total = 0L
+    for (q <- queries) total += bPlus.count(q, q + RANGE)
+    total
+  }
+}
@@ -0,0 +1,67 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+import java.util.regex.Pattern
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Literal dictionary against the same dictionary plus a few patterns, and against
+ * a literal scan followed by a regex pass for the patterns.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class PatternACBenchmark {
+  val WORDS = 10000
+  val TEXT = 100000
+  val PATTERNS = Array("err?r", "[0-9]{3}-code", "id[0-9]{2,4}", "[xyz]{2}?q", "w[^aeiou]{1,2}k")
+  val REGEX = Pattern.compile("(?=(err.r|[0-9]{3}-code|id[0-9]{2,4}|[xyz]{2}.q|w[^aeiou]{1,2}k))", Pattern.DOTALL)
+  var literals: DoubleArrayACTree = _
+  var mixed: DoubleArrayACTree = _
+  var text: Array[Char] = _
+  var checksum: Long = 0
+  val handler: MatchHandler = (patternId: Int, start: Int, end: Int) => checksum += patternId + end
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    val words = Array.fill(WORDS)(Array.fill(3 + random.nextInt(6))(('a' + random.nextInt(26)).toChar))
+    val literalTree = new AhoCorasickTree()
+    val mixedTree = new AhoCorasickTree()
+    for (w <- words) {
+      literalTree.addWord(w)
+      mixedTree.addWord(w)
+    }
+    PATTERNS.foreach(p => mixedTree.addPattern(p))
+    literals = literalTree.freeze()
+    mixed = mixedTree.freeze()
+    val alphabet = "abcdefghijklmnopqrstuvwxyz0123456789-"
+    text = Array.fill(TEXT)(alphabet.charAt(random.nextInt(alphabet.length)))
+  }
+
+  @Benchmark
+  def literalScan: Long = {
+    literals.scan(text, 0, text.length, handler)
+    checksum
+  }
+
+  @Benchmark
+  def patternScan: Long = {
+    mixed.scan(text, 0, text.length, handler)
+    checksum
+  }
+
+  @Benchmark
+  def literalScanAndRegex: Long = {
+    literals.scan(text, 0, text.length, handler)
+    val matcher = REGEX.matcher(java.nio.CharBuffer.wrap(text))
+    while (matcher.find()) checksum += matcher.end(1)
+    checksum
+  }
+}
@@ -0,0 +1,63 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.tools._
+
+import scala.util.Random
+
+/**
+ * Per character latency of the prefiltered scan against stepping the automaton on
+ * every character. The dictionary words start with <tt>q</tt>, <tt>x</tt> or
+ * <tt>z</tt> and the input is mostly other letters, spaces and digits, so the hit
+ * rate is controlled by the percentage of candidate characters in the input. The
+ * baseline only counts the final states it visits, so it is a lower bound of the
+ * cost of scanning without the prefilter.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class PrefilterBenchmark {
+  val TEXT = 1 << 16
+  val WORDS = 1000
+
+  @Param(Array("0", "1", "10", "50"))
+  var candidates: Int = _
+
+  val tree = new FastACTree()
+  var text: Array[Char] = _
+
+  @Setup
+  def initTrees(): Unit = {
+    val random = new Random(42)
+    val firsts = "qxz"
+    for (_ <- 0 until WORDS)
+      tree.addWord(firsts.charAt(random.nextInt(firsts.length)) +
+        Array.fill(2 + random.nextInt(6))(('a' + random.nextInt(26)).toChar).mkString)
+    tree.compile(true)
+    val others = "abcdefghijklmnoprstuvwy 0123456789"
+    text = Array.fill(TEXT) {
+      if (random.nextInt(100) < candidates) firsts.charAt(random.nextInt(firsts.length))
+      else others.charAt(random.nextInt(others.length))
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def prefiltered: Int = tree.count(text, 0, text.length)
+
+  @Benchmark
+  @OperationsPerInvocation(1 << 16)
+  def everyCharacter: Int = {
+    var state = tree
+    var matches = 0
+    for (c <- text) {
+      state = state.next(c)
+      if (state.isFinal) matches += 1
+    }
+    matches
+  }
+}
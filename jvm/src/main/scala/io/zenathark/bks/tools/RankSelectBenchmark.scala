@@ -0,0 +1,57 @@
+package io.zenathark.bks.tools
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import io.zenathark.primitives.IntBST
+
+import scala.util.Random
+
+/**
+ * Percentile tracking on a live set: every operation replaces a value and then asks
+ * for the median and for the rank of a value. The order statistics of IntBST are
+ * compared against sorting a snapshot of the values for every query.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Timeout(time = 10, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class RankSelectBenchmark {
+  @Param(Array("1000", "100000"))
+  var size: Int = _
+
+  val random = new Random(42)
+  var values: Array[Int] = _
+  var intBST: IntBST = _
+
+  @Setup
+  def initTrees(): Unit = {
+    values = Random.shuffle((0 until size * 4).toIndexedSeq).take(size).toArray
+    intBST = IntBST.fromUnsorted(values)
+  }
+
+  // Swaps a random value of the set for a new one, on both representations
+  private def replace(): Unit = {
+    val i = random.nextInt(size)
+    var v = random.nextInt(size * 4)
+    while (intBST.contains(v)) v = random.nextInt(size * 4)
+    intBST.remove(values(i)).push(v)
+    values(i) = v
+  }
+
+  @Benchmark
+  def orderStatistics: Int = {
+    replace()
+    intBST.select(size / 2) + intBST.rank(random.nextInt(size * 4))
+  }
+
+  @Benchmark
+  def sortedSnapshot: Int = {
+    replace()
+    val snapshot = values.clone()
+    java.util.Arrays.sort(snapshot)
+    val rank = java.util.Arrays.binarySearch(snapshot, random.nextInt(size * 4))
+    snapshot(size / 2) + (if (rank >= 0) rank else -rank - 1)
+  }
+}
@@ -1,5 +1,7 @@
 import spock.lang.*
 
+import io.zenathark.tools.FastACTree
+
 class FastACTreeSpec extends Specification {
 
 
@@ -28,7 +28,7 @@ class IntArrayTest extends FlatSpec  {
   }
 
   "seq method" should "recibe an array as new array" in {
-    val t = Array[Int](1,2,3)
+    val t = Array[scala.Int](1,2,3)
     val arr = IntArray.seq(t: _*)
     val sz = arr.data.length
     assert(sz == 3)
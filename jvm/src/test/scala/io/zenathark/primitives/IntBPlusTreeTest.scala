@@ -0,0 +1,58 @@
+package io.zenathark.primitives;
+
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable
+import scala.util.Random
+
+
+class IntBPlusTreeTest extends FlatSpec  {
+  "An Int B+ tree" should "start empty" in {
+    val tree = new IntBPlusTree()
+    assert(tree.empty())
+    assert(!tree.contains(0))
+    assert(tree.count(Integer.MIN_VALUE, Integer.MAX_VALUE) == 0)
+  }
+
+  "the fromSorted method" should "load a sorted IntArray" in {
+    val arr = IntArray.seq((0 until 1000).map(_ * 3): _*)
+    val tree = IntBPlusTree.fromSorted(arr)
+    assert(tree.size() == 1000)
+    assert(tree.height() == 3)
+    assert(tree.contains(2997))
+    assert(!tree.contains(2998))
+  }
+
+  "the fromSorted method" should "reject unsorted keys" in {
+    assertThrows[IllegalArgumentException] {
+      IntBPlusTree.fromSorted(IntArray.seq(1, 3, 2))
+    }
+  }
+
+  "the range method" should "visit the keys on [from, to) in order" in {
+    val tree = IntBPlusTree.fromSorted(IntArray.seq((0 until 1000).map(_ * 3): _*))
+    val keys = mutable.ArrayBuffer[scala.Int]()
+    tree.range(10, 100, k => keys += k)
+    assert(keys == (12 until 100 by 3))
+    assert(tree.count(10, 100) == keys.size)
+  }
+
+  "An Int B+ tree" should "behave as a sorted set" in {
+    val random = new Random(42)
+    val tree = new IntBPlusTree()
+    val set = mutable.TreeSet[scala.Int]()
+    for (_ <- 0 until 20000) {
+      val v = random.nextInt(50000)
+      assert(tree.add(v) == set.add(v))
+    }
+    assert(tree.size() == set.size)
+    val keys = mutable.ArrayBuffer[scala.Int]()
+    tree.forEach(k => keys += k)
+    assert(keys == set.toSeq)
+    for (_ <- 0 until 100) {
+      val from = random.nextInt(50000)
+      val to = from + random.nextInt(1000)
+      assert(tree.count(from, to) == set.range(from, to).size)
+    }
+  }
+}
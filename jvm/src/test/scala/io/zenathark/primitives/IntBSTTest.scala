@@ -0,0 +1,99 @@
+package io.zenathark.primitives;
+
+import org.scalatest.FlatSpec
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.util.Random
+
+
+class IntBSTTest extends FlatSpec  {
+  "An Int BST" should "start empty" in {
+    val bst = new IntBST()
+    assert(bst.empty())
+    assert(bst.root() == -1)
+    assert(bst.search(1) == -1)
+  }
+
+  "An Int BST" should "find the pushed values" in {
+    val bst = new IntBST()
+    bst.push(5).push(2).push(8)
+    assert(bst.size() == 3)
+    assert(bst.get(bst.search(2)) == 2)
+    assert(bst.contains(8))
+    assert(!bst.contains(3))
+  }
+
+  "the push method" should "reject repeated values" in {
+    val bst = new IntBST().push(1)
+    assertThrows[IllegalArgumentException] {
+      bst.push(1)
+    }
+  }
+
+  "the push method" should "keep the tree balanced on sorted input" in {
+    val bst = new IntBST()
+    for (i <- 0 until (1 << 16)) bst.push(i)
+    // AVL height bound, 1.44 log2(n + 2)
+    assert(bst.height() <= 23)
+    assert((0 until (1 << 16)).forall(bst.contains))
+  }
+
+  "the remove method" should "reuse the freed slots" in {
+    val bst = new IntBST()
+    for (i <- 0 until 100) bst.push(i)
+    for (i <- 0 until 100 by 2) bst.remove(i)
+    for (i <- 100 until 150) bst.push(i)
+    assert(bst.size() == 100)
+    assert(bst.data.size == 100)
+    assert((0 until 100 by 2).forall(!bst.contains(_)))
+  }
+
+  "the fromUnsorted method" should "build a balanced tree without repeated values" in {
+    val bst = IntBST.fromUnsorted(Array(5, 3, 9, 3, 1, 7, 5))
+    assert(bst.toArray().toSeq == Seq(1, 3, 5, 7, 9))
+    assert(bst.height() == 3)
+    bst.push(4).remove(5)
+    assert(bst.toArray().toSeq == Seq(1, 3, 4, 7, 9))
+  }
+
+  "the merge method" should "join two trees" in {
+    val merged = IntBST.merge(IntBST.fromSorted(Array(1, 3, 5)), IntBST.fromSorted(Array(2, 3, 6)))
+    assert(merged.toArray().toSeq == Seq(1, 2, 3, 5, 6))
+  }
+
+  "An Int BST" should "behave as a sorted set" in {
+    val random = new Random(42)
+    val bst = new IntBST()
+    val set = mutable.TreeSet[scala.Int]()
+    for (_ <- 0 until 10000) {
+      val v = random.nextInt(1000)
+      if (random.nextBoolean()) {
+        bst.remove(v)
+        set.remove(v)
+      } else if (set.add(v)) bst.push(v)
+      assert(bst.size() == set.size)
+    }
+    assert(bst.height() <= 15)
+    assert(bst.preorderIterator().asScala.map(_.`val`).toList.sorted == set.toList)
+  }
+
+  "the rank and select methods" should "follow the sorted order of a live set" in {
+    val random = new Random(7)
+    val bst = new IntBST()
+    val set = mutable.TreeSet[scala.Int]()
+    for (_ <- 0 until 5000) {
+      val v = random.nextInt(2000)
+      if (random.nextInt(3) == 0) {
+        bst.remove(v)
+        set.remove(v)
+      } else if (set.add(v)) bst.push(v)
+    }
+    val sorted = set.toIndexedSeq
+    for (k <- sorted.indices) assert(bst.select(k) == sorted(k))
+    for (v <- -1 to 2001) assert(bst.rank(v) == set.until(v).size)
+    assertThrows[IndexOutOfBoundsException] {
+      bst.select(sorted.size)
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package io.zenathark.tools;
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+/**
+ * Brute force matchers and random dictionaries for the Aho-Corasick specs. A match
+ * is a (pattern id, start, end) triple, with the end exclusive.
+ */
+object ACReference {
+  type Match = (Int, Int, Int)
+
+  /** Distinct random words over an alphabet, pattern ids are their indexes */
+  def words(random: Random, n: Int, alphabet: String, maxLength: Int): IndexedSeq[String] = {
+    val ans = mutable.LinkedHashSet[String]()
+    for (_ <- 0 until n * 10 if ans.size < n)
+      ans += randomString(random, 1 + random.nextInt(maxLength), alphabet)
+    ans.toIndexedSeq
+  }
+
+  /** Random text over an alphabet with some of the words planted on it */
+  def text(random: Random, length: Int, alphabet: String, words: Seq[String]): String = {
+    val sb = new StringBuilder(randomString(random, length, alphabet))
+    for (_ <- 0 until length / 8 if words.nonEmpty) {
+      val w = words(random.nextInt(words.size))
+      if (w.length <= length) {
+        val at = random.nextInt(length - w.length + 1)
+        sb.replace(at, at + w.length, w)
+      }
+    }
+    sb.toString
+  }
+
+  def randomString(random: Random, length: Int, alphabet: String): String =
+    Array.fill(length)(alphabet(random.nextInt(alphabet.length))).mkString
+
+  /** Every (overlapping) occurrence of the words, sorted */
+  def all(words: Seq[String], text: String): Seq[Match] =
+    (for {
+      (w, id) <- words.zipWithIndex
+      start <- 0 to text.length - w.length
+      if text.startsWith(w, start)
+    } yield (id, start, start + w.length)).sorted
+
+  /**
+   * Non-overlapping occurrences: among the matches starting at the leftmost position
+   * the longest one, or the one with the lowest id, then the search resumes at its end.
+   */
+  def leftmost(words: Seq[String], text: String, longest: Boolean): Seq[Match] = {
+    val matches = all(words, text)
+    val ans = ArrayBuffer[Match]()
+    var from = 0
+    var done = false
+    while (!done) {
+      val candidates = matches.filter(_._2 >= from)
+      if (candidates.isEmpty) {
+        done = true
+      } else {
+        val start = candidates.map(_._2).min
+        val at = candidates.filter(_._2 == start)
+        val best = if (longest) at.maxBy(_._3) else at.minBy(_._1)
+        ans += best
+        from = best._3
+      }
+    }
+    ans
+  }
+
+  /** Matches reported by a scan, in the order they were reported */
+  def collect(scan: MatchHandler => Unit): Seq[Match] = {
+    val ans = ArrayBuffer[Match]()
+    scan((id: Int, start: Int, end: Int) => ans += ((id, start, end)))
+    ans
+  }
+}
@@ -0,0 +1,70 @@
+package io.zenathark.tools;
+
+import java.util.concurrent.{ConcurrentLinkedQueue, CountDownLatch}
+
+import org.scalatest.FlatSpec
+
+
+class ACRegistryTest extends FlatSpec  {
+  import ACReference._
+
+  private def freeze(words: String*): DoubleArrayACTree = {
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    tree.freeze()
+  }
+
+  "A registry" should "publish, replace and remove versions" in {
+    val registry = new ACRegistry()
+    val v1 = freeze("ab")
+    val v2 = freeze("bc")
+    assert(registry.get("d") == null)
+    assert(registry.publish("d", v1) == null)
+    assert(registry.publish("d", v2) eq v1)
+    assert(registry.get("d") eq v2)
+    assert(registry.names().contains("d"))
+    assert(registry.remove("d") eq v2)
+    assert(registry.remove("d") == null)
+    assert(!registry.scan("d", "abc".toCharArray, 0, 3, (_: Int, _: Int, _: Int) => ()))
+  }
+
+  "A registry" should "only publish over the expected version" in {
+    val registry = new ACRegistry()
+    val v1 = freeze("ab")
+    val v2 = freeze("bc")
+    assert(registry.publish("d", null, v1))
+    assert(!registry.publish("d", null, v2))
+    assert(!registry.publish("d", v2, v2))
+    assert(registry.publish("d", v1, v2))
+    assert(registry.get("d") eq v2)
+    val text = "abc".toCharArray
+    assert(collect(h => registry.scan("d", text, 0, 3, h)) == Seq((0, 1, 3)))
+  }
+
+  "A registry" should "not lose versions published while removing" in {
+    val registry = new ACRegistry()
+    val writers = 2
+    val versions = Array.fill(writers, 5000)(freeze("ab"))
+    // Every published version is returned once, by a publish, a remove or the last get
+    val returned = new ConcurrentLinkedQueue[DoubleArrayACTree]()
+    def keep(v: DoubleArrayACTree): Unit = if (v != null) returned.add(v)
+    val start = new CountDownLatch(1)
+    val threads = (0 until writers).map { w =>
+      new Thread(() => {
+        start.await()
+        versions(w).foreach(v => keep(registry.publish("d", v)))
+      })
+    } :+ new Thread(() => {
+      start.await()
+      for (_ <- 0 until 20000) keep(registry.remove("d"))
+    })
+    threads.foreach(_.start())
+    start.countDown()
+    threads.foreach(_.join())
+    keep(registry.get("d"))
+    assert(returned.size == writers * 5000)
+    val ids = new java.util.IdentityHashMap[DoubleArrayACTree, Unit]()
+    returned.forEach(v => ids.put(v, ()))
+    assert(versions.flatten.forall(ids.containsKey))
+  }
+}
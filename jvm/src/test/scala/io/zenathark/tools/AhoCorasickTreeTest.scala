@@ -0,0 +1,108 @@
+package io.zenathark.tools;
+
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable
+import scala.util.Random
+
+
+class AhoCorasickTreeTest extends FlatSpec  {
+  import ACReference._
+
+  private def build(words: Seq[String]): AhoCorasickTree = {
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    tree
+  }
+
+  "the scan method" should "report the matches of a slice as a naive search" in {
+    val random = new Random(42)
+    for (_ <- 0 until 100) {
+      val words = ACReference.words(random, 1 + random.nextInt(20), "abc", 5)
+      val text = ACReference.text(random, 200, "abcd", words)
+      val chars = text.toCharArray
+      val from = random.nextInt(chars.length)
+      val to = from + random.nextInt(chars.length - from + 1)
+      val tree = build(words)
+      val expected = all(words, text.substring(from, to)).map(m => (m._1, m._2 + from, m._3 + from))
+      assert(collect(h => tree.scan(chars, from, to, h)).sorted == expected)
+    }
+  }
+
+  "the scan method" should "see the words added after a previous scan" in {
+    val tree = build(Seq("ab"))
+    assert(collect(h => tree.scan("abc", h)) == Seq((0, 0, 2)))
+    tree.addWord("bc")
+    assert(collect(h => tree.scan("abc", h)).sorted == Seq((0, 0, 2), (1, 1, 3)))
+  }
+
+  private def path(node: AhoCorasickTree): String =
+    if (node.isRoot) "" else path(node.parent.get) + node.chr.get
+
+  // Fail and output links of every node, by the string of the node
+  private def links(root: AhoCorasickTree): Map[String, (String, String)] = {
+    val ans = mutable.Map[String, (String, String)]()
+    val stack = mutable.Stack(root)
+    while (stack.nonEmpty) {
+      val node = stack.pop()
+      val output = if (node.output.isPresent) path(node.output.get) else null
+      if (!node.isRoot) ans(path(node)) = (path(node.fall.get), output)
+      node.childs.values.forEach(e => stack.push(e))
+    }
+    ans.toMap
+  }
+
+  // Matches by word, since removed ids are not reused
+  private def byWord(automaton: DoubleArrayACTree, text: String): Seq[(String, Int, Int)] =
+    collect(h => automaton.scan(text, h)).map(m => (automaton.word(m._1), m._2, m._3)).sorted
+
+  "An incremental tree" should "repair its links as a full compile" in {
+    val random = new Random(42)
+    for (_ <- 0 until 50) {
+      val pool = ACReference.words(random, 30, "abc", 5)
+      val tree = new AhoCorasickTree()
+      val words = mutable.LinkedHashSet[String]()
+      for (w <- pool.take(10)) { tree.addWord(w); words += w }
+      tree.compile()
+      for (_ <- 0 until 40) {
+        val w = pool(random.nextInt(pool.size))
+        if (random.nextInt(3) == 0) { tree.removeWord(w); words -= w }
+        else { tree.addWord(w); words += w }
+        assert(tree.isCompiled)
+        val fresh = new AhoCorasickTree()
+        words.foreach(fresh.addWord(_: String))
+        fresh.compile()
+        assert(links(tree) == links(fresh))
+        val text = ACReference.text(random, 100, "abcd", pool)
+        val expected = all(words.toSeq, text).map(m => (words.toSeq.apply(m._1), m._2, m._3)).sorted
+        assert(byWord(tree.freeze(), text) == expected)
+        val it = tree.iterator(text)
+        var tokens = Seq[String]()
+        while (it.hasNext) tokens :+= it.next()
+        assert(tokens.sorted == expected.map(_._1))
+      }
+    }
+  }
+
+  "An incremental tree" should "scan as a fresh tree when it has patterns" in {
+    val random = new Random(5)
+    for (_ <- 0 until 20) {
+      val pool = ACReference.words(random, 20, "abc", 4)
+      val tree = new AhoCorasickTree()
+      val words = mutable.LinkedHashSet[String]()
+      tree.addPattern("a?c")
+      for (w <- pool.take(5)) { tree.addWord(w); words += w }
+      tree.freeze()
+      for (_ <- 0 until 20) {
+        val w = pool(random.nextInt(pool.size))
+        if (random.nextInt(3) == 0) { tree.removeWord(w); words -= w }
+        else { tree.addWord(w); words += w }
+        val fresh = new AhoCorasickTree()
+        fresh.addPattern("a?c")
+        words.foreach(fresh.addWord(_: String))
+        val text = ACReference.text(random, 100, "abcd", pool)
+        assert(byWord(tree.freeze(), text) == byWord(fresh.freeze(), text))
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package io.zenathark.tools;
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+
+class AlphabetACTreeTest extends FlatSpec  {
+  import ACReference._
+
+  private def build(words: Seq[String]): AlphabetACTree = {
+    val tree = new AlphabetACTree()
+    words.foreach(w => tree.addWord(w))
+    tree
+  }
+
+  "An alphabet tree" should "match a naive substring search" in {
+    val random = new Random(42)
+    for (alphabet <- Seq("ab", "abcd", "aé中ÿ￿"); deterministic <- Seq(false, true)) {
+      for (_ <- 0 until 50) {
+        val words = ACReference.words(random, 1 + random.nextInt(30), alphabet, 6)
+        val text = ACReference.text(random, 300, alphabet + "xyz", words).toCharArray
+        val tree = build(words).compile(deterministic)
+        val expected = all(words, new String(text))
+        assert(collect(h => tree.scan(text, 0, text.length, h)).sorted == expected)
+        assert(tree.count(text, 0, text.length) == expected.size)
+      }
+    }
+  }
+
+  "An alphabet tree" should "compile itself on the first scan" in {
+    val tree = build(Seq("ab"))
+    assert(!tree.isCompiled)
+    assert(tree.count("abab".toCharArray, 0, 4) == 2)
+    assert(tree.isCompiled)
+  }
+
+  "An alphabet tree" should "keep only the edges of the Trie unless it is deterministic" in {
+    val words = Seq("he", "she", "his", "hers")
+    val sparse = build(words).compile(false)
+    assert(sparse.delta == null)
+    assert(sparse.edges.length == sparse.fail.length - 1)
+    val dense = build(words).compile(true)
+    assert(dense.edges == null)
+    assert(dense.delta.length == dense.fail.length * dense.width)
+  }
+
+  "the scan method" should "only report the matches inside a slice" in {
+    val tree = build(Seq("ab", "bc", "abc"))
+    val chars = "abcabc".toCharArray
+    assert(collect(h => tree.scan(chars, 1, 5, h)).sorted == Seq((0, 3, 5), (1, 1, 3)))
+  }
+
+  "A deterministic tree" should "stay sparse if its table does not fit on an array" in {
+    // 65535 states times 65536 classes overflows an int
+    val tree = new AlphabetACTree()
+    for (c <- 1 to Character.MAX_VALUE) tree.addWord(c.toChar.toString)
+    tree.compile(true)
+    assert(!tree.isDeterministic)
+    assert(tree.delta == null)
+    val text = "a\u00e9\uffff".toCharArray
+    assert(collect(h => tree.scan(text, 0, text.length, h)).map(_._2) == Seq(0, 1, 2))
+    assert(build(Seq("ab")).compile(true).isDeterministic)
+  }
+}
@@ -0,0 +1,75 @@
+package io.zenathark.tools;
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, StandardOpenOption}
+
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+
+class ByteACTreeTest extends FlatSpec  {
+  import ACReference._
+
+  private def utf8(s: String): Array[Byte] = s.getBytes(StandardCharsets.UTF_8)
+
+  /** Every (overlapping) occurrence of the UTF-8 words on the UTF-8 text, sorted */
+  private def naive(words: Seq[String], text: String): Seq[Match] = {
+    val bytes = utf8(text)
+    (for {
+      (w, id) <- words.map(utf8).zipWithIndex
+      start <- 0 to bytes.length - w.length
+      if java.util.Arrays.equals(bytes.slice(start, start + w.length), w)
+    } yield (id, start, start + w.length)).sorted
+  }
+
+  "A byte automaton" should "match a naive search over the UTF-8 bytes" in {
+    val random = new Random(42)
+    for (alphabet <- Seq("ab", "aé中b", "é中ÿ")) {
+      for (_ <- 0 until 50) {
+        val words = ACReference.words(random, 1 + random.nextInt(20), alphabet, 5)
+        val text = ACReference.text(random, 200, alphabet + "x", words)
+        val automaton = new ByteACTree(words: _*)
+        val bytes = utf8(text)
+        val expected = naive(words, text)
+        assert(collect(h => automaton.scan(bytes, 0, bytes.length, h)).sorted == expected)
+        assert(collect(h => automaton.scan(ByteBuffer.wrap(bytes), h)).sorted == expected)
+      }
+    }
+  }
+
+  "A byte automaton" should "report byte offsets of multi-byte words" in {
+    val automaton = new ByteACTree("é", "中b")
+    val bytes = utf8("aé中b")
+    assert(collect(h => automaton.scan(bytes, 0, bytes.length, h)) == Seq((0, 1, 3), (1, 3, 7)))
+    assert(automaton.length(1) == 4)
+  }
+
+  "A byte automaton" should "find the matches crossing the mapped regions of a file" in {
+    val random = new Random(7)
+    val file = Files.createTempFile("ByteACTreeTest", ".txt")
+    try {
+      for (_ <- 0 until 20) {
+        val words = ACReference.words(random, 1 + random.nextInt(20), "aé中b", 6)
+        val text = ACReference.text(random, 500, "aé中bc", words)
+        Files.write(file, utf8(text))
+        val automaton = new ByteACTree(words: _*)
+        val channel = FileChannel.open(file, StandardOpenOption.READ)
+        try {
+          for (region <- Seq(1, 2, 3, 7, 64, ByteACTree.MAX_REGION)) {
+            val ans = ArrayBuffer[Match]()
+            automaton.scan(channel, (id: Int, start: Long, end: Long) => ans += ((id, start.toInt, end.toInt)), region)
+            assert(ans.sorted == naive(words, text))
+          }
+        } finally {
+          channel.close()
+        }
+      }
+    } finally {
+      Files.delete(file)
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package io.zenathark.tools;
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+
+class CharFoldingTest extends FlatSpec  {
+  import ACReference._
+
+  private val accents = Map('é' -> 'e', 'è' -> 'e', 'É' -> 'E', 'È' -> 'E', 'ü' -> 'u', 'Ü' -> 'U')
+
+  private def fold(s: String, ignoreCase: Boolean, ignoreAccents: Boolean): String =
+    s.map { c =>
+      val f = if (ignoreAccents) accents.getOrElse(c, c) else c
+      if (ignoreCase) f.toLower else f
+    }
+
+  // Words that are still distinct once folded, so pattern ids match the reference
+  private def distinct(words: Seq[String], ignoreCase: Boolean, ignoreAccents: Boolean): Seq[String] =
+    words.groupBy(fold(_, ignoreCase, ignoreAccents)).values.map(_.head).toSeq.sortBy(words.indexOf(_))
+
+  private def check(alphabet: String, ignoreCase: Boolean, ignoreAccents: Boolean)
+                   (scan: (Seq[String], Array[Char]) => Seq[Match]): Unit = {
+    val random = new Random(42)
+    for (_ <- 0 until 50) {
+      val words = distinct(ACReference.words(random, 1 + random.nextInt(20), alphabet, 5), ignoreCase, ignoreAccents)
+      val text = ACReference.text(random, 200, alphabet + "x", words)
+      // Plant the words upper cased too
+      val shuffled = ACReference.text(random, 200, alphabet, words.map(_.toUpperCase)) + text
+      val expected = all(words.map(fold(_, ignoreCase, ignoreAccents)), fold(shuffled, ignoreCase, ignoreAccents))
+      assert(scan(words, shuffled.toCharArray).sorted == expected)
+    }
+  }
+
+  private val modes = Seq((true, false), (false, true), (true, true))
+
+  "An Aho-Corasick tree" should "fold its words and input" in {
+    for ((ignoreCase, ignoreAccents) <- modes) check("aAeEéÉèüÜ", ignoreCase, ignoreAccents) { (words, text) =>
+      val tree = new AhoCorasickTree(ignoreCase, ignoreAccents)
+      words.foreach(w => tree.addWord(w))
+      collect(h => tree.scan(text, 0, text.length, h))
+    }
+  }
+
+  "An alphabet tree" should "fold its words and input" in {
+    for ((ignoreCase, ignoreAccents) <- modes; deterministic <- Seq(false, true))
+      check("aAeEéÉèüÜ", ignoreCase, ignoreAccents) { (words, text) =>
+        val tree = new AlphabetACTree(ignoreCase, ignoreAccents)
+        words.foreach(w => tree.addWord(w))
+        tree.compile(deterministic)
+        collect(h => tree.scan(text, 0, text.length, h))
+      }
+  }
+
+  "A compact tree" should "fold its words and input" in {
+    for ((ignoreCase, ignoreAccents) <- modes) check("aAeEéÉèüÜ", ignoreCase, ignoreAccents) { (words, text) =>
+      val tree = new CompactACTree(ignoreCase, ignoreAccents)
+      words.foreach(w => tree.addWord(w))
+      collect(h => tree.scan(text, 0, text.length, h))
+    }
+  }
+
+  "A fast tree" should "fold its words and input" in {
+    // Only folded words within a-z can be added to a fast tree
+    for ((alphabet, ignoreCase, ignoreAccents) <- Seq(("aAeE", true, false), ("aeéèü", false, true), ("aAeEéÉèüÜ", true, true)))
+      check(alphabet, ignoreCase, ignoreAccents) { (words, text) =>
+        val tree = new FastACTree(ignoreCase, ignoreAccents)
+        words.foreach(w => tree.addWord(w))
+        collect(h => tree.scan(text, 0, text.length, h))
+      }
+  }
+}
@@ -0,0 +1,139 @@
+package io.zenathark.tools;
+
+import java.util.regex.Pattern
+
+import org.scalatest.FlatSpec
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+
+class CharPatternTest extends FlatSpec  {
+  import ACReference._
+
+  private def randomAtom(random: Random): String = {
+    val atom = random.nextInt(5) match {
+      case 0 => "?"
+      case 1 => "[ab]"
+      case 2 => "[^a]"
+      case 3 => "[b-d]"
+      case _ => "abc" (random.nextInt(3)).toString
+    }
+    random.nextInt(4) match {
+      case 0 => atom + "{" + (1 + random.nextInt(2)) + "}"
+      case 1 => atom + "{" + random.nextInt(2) + "," + (1 + random.nextInt(2)) + "}"
+      case _ => atom
+    }
+  }
+
+  private def randomPattern(random: Random): String =
+    Seq.fill(1 + random.nextInt(3))(randomAtom(random)).mkString
+
+  // The pattern syntax is a subset of java.util.regex, only ? has to be translated
+  private def regex(pattern: String): Pattern =
+    Pattern.compile(pattern.replace("?", "."), Pattern.DOTALL)
+
+  /** Every (start, end) of the text matched by a pattern, up to a length */
+  private def naive(id: Int, pattern: String, text: String, maxLength: Int): Seq[Match] = {
+    val matcher = regex(pattern).matcher(text)
+    for {
+      start <- 0 until text.length
+      end <- start + 1 to math.min(text.length, start + maxLength)
+      if matcher.region(start, end).matches()
+    } yield (id, start, end)
+  }
+
+  "A pattern dictionary" should "match as java.util.regex" in {
+    val random = new Random(42)
+    var checked = 0
+    while (checked < 200) {
+      val patterns = Seq.fill(1 + random.nextInt(3))(randomPattern(random))
+      // Patterns that can match the empty string are rejected, skip them
+      if (patterns.forall(p => !regex(p).matcher("").matches())) {
+        val words = ACReference.words(random, random.nextInt(4), "abc", 3)
+        val tree = new AhoCorasickTree()
+        words.foreach(w => tree.addWord(w))
+        patterns.foreach(p => tree.addPattern(p))
+        val text = ACReference.text(random, 100, "abcdx", words)
+        val expected = (all(words, text) ++ patterns.zipWithIndex.flatMap { case (p, i) =>
+          naive(words.size + i, p, text, 6)
+        }).sorted
+        assert(collect(h => tree.scan(text, h)).sorted == expected, patterns)
+        assert(collect(h => tree.freeze().scan(text, h)).sorted == expected, patterns)
+        checked += 1
+      }
+    }
+  }
+
+  "A pattern dictionary" should "fold its patterns on case insensitive trees" in {
+    val tree = new AhoCorasickTree(true, false)
+    tree.addPattern("[a-c]x?")
+    val text = "AXyBxzCxQ"
+    assert(collect(h => tree.scan(text, h)).map(m => text.substring(m._2, m._3)) == Seq("AXy", "Bxz", "CxQ"))
+    val negated = new AhoCorasickTree(true, false)
+    negated.addPattern("[^a]")
+    assert(collect(h => negated.scan("aAb", h)) == Seq((0, 2, 3)))
+  }
+
+  "A folded pattern" should "only keep the characters the folding can produce" in {
+    val fold = CharFolding.table(true, true)
+    for (source <- Seq("?", "[^a]", "[A-Z]", "\u00c9")) {
+      val set = new CharPattern(source, 0, 0, fold).sets(0)
+      assert(!set.isEmpty)
+      assert((0 until CharPattern.ALPHABET).forall(c => !set.get(c) || fold(c) == c), source)
+    }
+    assert(new CharPattern("[^a]", 0, 0, fold).sets(0).cardinality ==
+      (0 until CharPattern.ALPHABET).count(c => fold(c) == c) - 1)
+  }
+
+  "A pattern" should "be rejected if it is malformed or can match the empty string" in {
+    for (p <- Seq("", "[", "[]", "[b-a]", "a\\", "a{", "a{x}", "a{2,1}", "a{0}", "a{0,1}", "a{256}"))
+      assertThrows[IllegalArgumentException](new AhoCorasickTree().addPattern(p))
+  }
+
+  private def nodes(tree: AhoCorasickTree): Int =
+    1 + tree.childs.values.asScala.map(nodes).sum
+
+  "A pattern" should "be rejected by addPattern if it expands to too many strings" in {
+    val tree = new AhoCorasickTree()
+    tree.addWord("abcdefghijklmnopq")
+    assertThrows[IllegalArgumentException](tree.addPattern("[a-q]{5}"))
+    // The tree is left as if the pattern was never added
+    assert(nodes(tree) == 18)
+    tree.addWord("ab")
+    tree.addPattern("[a-q]{2}")
+    assert(collect(h => tree.scan("xab", h)).sorted == Seq((1, 1, 3), (2, 1, 3)))
+  }
+
+  "A pattern" should "leave the tree usable when new words push it over the limit" in {
+    val tree = new AhoCorasickTree()
+    tree.addWord("abcdefghijklmno")
+    // 15 literal classes plus [pq] give 16^4 = MAX_EXPANSIONS strings
+    tree.addPattern("[a-q]{4}")
+    assert(collect(h => tree.scan("qqqq", h)) == Seq((1, 0, 4)))
+    tree.addWord("p")
+    assertThrows[IllegalArgumentException](tree.compile())
+    assertThrows[IllegalArgumentException](tree.scan("qqqq", (_: Int, _: Int, _: Int) => ()))
+    assert(nodes(tree) == 17)
+    tree.removeWord("p")
+    assert(collect(h => tree.scan("qqqq", h)) == Seq((1, 0, 4)))
+    tree.addWord("p")
+    tree.removePattern("[a-q]{4}")
+    // Removed ids are not reused
+    assert(collect(h => tree.scan("pqqq", h)) == Seq((3, 0, 1)))
+  }
+
+  "A removed pattern" should "no longer be reported" in {
+    val tree = new AhoCorasickTree()
+    tree.addWord("ab")
+    tree.addPattern("a?")
+    tree.addPattern("?b")
+    assert(collect(h => tree.scan("ab", h)).sorted == Seq((0, 0, 2), (1, 0, 2), (2, 0, 2)))
+    tree.removePattern("a?")
+    assert(collect(h => tree.scan("ab", h)).sorted == Seq((0, 0, 2), (2, 0, 2)))
+    tree.removePattern("missing")
+    tree.removePattern("?b")
+    assert(collect(h => tree.scan("ab", h)) == Seq((0, 0, 2)))
+    assert(nodes(tree) == 3)
+  }
+}
@@ -0,0 +1,158 @@
+package io.zenathark.tools;
+
+import java.io.IOException
+import java.nio.{ByteBuffer, ByteOrder}
+import java.nio.file.{Files, Path}
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+
+class DoubleArrayACTreeTest extends FlatSpec  {
+  import ACReference._
+
+  private def freeze(words: Seq[String]): DoubleArrayACTree = {
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    tree.freeze()
+  }
+
+  "A double-array automaton" should "report nothing for an empty dictionary" in {
+    val automaton = new AhoCorasickTree().freeze()
+    assert(automaton.size() == 0)
+    assert(automaton.count("abc") == 0)
+  }
+
+  "A double-array automaton" should "find the overlapping matches of a small dictionary" in {
+    val automaton = freeze(Seq("he", "she", "his", "hers"))
+    val matches = collect(h => automaton.scan("ushers", h))
+    assert(matches.sorted == Seq((0, 2, 4), (1, 1, 4), (3, 2, 6)))
+    assert(automaton.word(1) == "she")
+  }
+
+  "the scan method" should "match a naive substring search" in {
+    val random = new Random(42)
+    for (alphabet <- Seq("ab", "abcd", "abcdefghijklmnopqrstuvwxyzé中")) {
+      for (_ <- 0 until 50) {
+        val words = ACReference.words(random, 1 + random.nextInt(30), alphabet, 6)
+        val text = ACReference.text(random, 300, alphabet, words)
+        val automaton = freeze(words)
+        val expected = all(words, text)
+        val chars = text.toCharArray
+        assert(collect(h => automaton.scan(chars, 0, chars.length, h)).sorted == expected)
+        assert(collect(h => automaton.scan(text, h)).sorted == expected)
+        assert(automaton.count(chars, 0, chars.length) == expected.size)
+        assert(automaton.count(text) == expected.size)
+      }
+    }
+  }
+
+  "the scan method" should "only report the matches inside a slice" in {
+    val automaton = freeze(Seq("ab", "bc", "abc"))
+    val chars = "abcabc".toCharArray
+    assert(collect(h => automaton.scan(chars, 1, 5, h)).sorted == Seq((0, 3, 5), (1, 1, 3)))
+  }
+
+  "An Aho-Corasick tree" should "scan and tokenize as the naive search" in {
+    val random = new Random(7)
+    for (_ <- 0 until 50) {
+      val words = ACReference.words(random, 1 + random.nextInt(20), "abc", 5)
+      val text = ACReference.text(random, 200, "abc", words)
+      val tree = new AhoCorasickTree()
+      words.foreach(w => tree.addWord(w))
+      val expected = all(words, text)
+      assert(collect(h => tree.scan(text, h)).sorted == expected)
+      val it = tree.iterator(text)
+      var tokens = Seq[String]()
+      while (it.hasNext) tokens :+= it.next()
+      assert(tokens.sorted == expected.map(m => words(m._1)).sorted)
+    }
+  }
+
+  private def withTempFile(body: Path => Unit): Unit = {
+    val path = Files.createTempFile("DoubleArrayACTreeTest", ".aca")
+    try body(path) finally Files.delete(path)
+  }
+
+  // Overwrites a little endian int of an image
+  private def patch(path: Path, offset: Int, value: Int): Unit = {
+    val bytes = Files.readAllBytes(path)
+    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value)
+    Files.write(path, bytes)
+  }
+
+  "the load method" should "read back the automaton written by save" in {
+    val random = new Random(3)
+    withTempFile { path =>
+      for (_ <- 0 until 20) {
+        val words = ACReference.words(random, 1 + random.nextInt(30), "abcé中", 6)
+        val tree = new AhoCorasickTree()
+        words.zipWithIndex.foreach { case (w, i) => tree.addWord(w, 100L * i) }
+        tree.addPattern("a?[bc]{1,2}", -1L)
+        val automaton = tree.freeze()
+        automaton.save(path)
+        val loaded = DoubleArrayACTree.load(path)
+        assert(loaded.size() == automaton.size())
+        for (id <- 0 until automaton.size()) {
+          assert(loaded.word(id) == automaton.word(id))
+          assert(loaded.payload(id) == automaton.payload(id))
+        }
+        val text = ACReference.text(random, 300, "abcdé中", words)
+        assert(collect(h => loaded.scan(text, h)) == collect(h => automaton.scan(text, h)))
+      }
+    }
+  }
+
+  "the load method" should "reject files that are not automata" in {
+    withTempFile { path =>
+      freeze(Seq("he", "she")).save(path)
+      patch(path, 0, 0x12345678)
+      assertThrows[IOException](DoubleArrayACTree.load(path))
+      Files.write(path, Array[Byte](1, 2, 3))
+      assertThrows[IOException](DoubleArrayACTree.load(path))
+    }
+  }
+
+  "the load method" should "reject unknown versions and truncated images" in {
+    withTempFile { path =>
+      freeze(Seq("he", "she")).save(path)
+      patch(path, 4, DoubleArrayACTree.VERSION + 1)
+      assertThrows[IOException](DoubleArrayACTree.load(path))
+      patch(path, 4, 0)
+      assertThrows[IOException](DoubleArrayACTree.load(path))
+      freeze(Seq("he", "she")).save(path)
+      val bytes = Files.readAllBytes(path)
+      Files.write(path, bytes.take(bytes.length / 2))
+      assertThrows[IOException](DoubleArrayACTree.load(path))
+    }
+  }
+
+  "the leftmost modes" should "match a naive leftmost search" in {
+    val random = new Random(11)
+    for (alphabet <- Seq("ab", "abcd"); _ <- 0 until 100) {
+      val words = ACReference.words(random, 1 + random.nextInt(20), alphabet, 6)
+      val text = ACReference.text(random, 200, alphabet + "x", words)
+      val chars = text.toCharArray
+      val tree = new AhoCorasickTree()
+      words.foreach(w => tree.addWord(w))
+      val automaton = tree.freeze()
+      for ((mode, longest) <- Seq((MatchMode.LEFTMOST_LONGEST, true), (MatchMode.LEFTMOST_FIRST, false))) {
+        val expected = leftmost(words, text, longest)
+        assert(collect(h => automaton.scan(text, mode, h)) == expected)
+        assert(collect(h => automaton.scan(chars, 0, chars.length, mode, h)) == expected)
+        assert(collect(h => tree.scan(text, mode, h)) == expected)
+      }
+      assert(collect(h => automaton.scan(text, MatchMode.ALL, h)).sorted == all(words, text))
+    }
+  }
+
+  "the leftmost modes" should "prefer the longest or the first word" in {
+    val automaton = freeze(Seq("abcd", "ab", "bcdef", "b"))
+    assert(collect(h => automaton.scan("abcdef", MatchMode.LEFTMOST_LONGEST, h)) == Seq((0, 0, 4)))
+    assert(collect(h => automaton.scan("abcdef", MatchMode.LEFTMOST_FIRST, h)) == Seq((0, 0, 4)))
+    val first = freeze(Seq("ab", "abcd", "cdef"))
+    assert(collect(h => first.scan("abcdef", MatchMode.LEFTMOST_FIRST, h)) == Seq((0, 0, 2), (2, 2, 6)))
+    assert(collect(h => first.scan("abcdef", MatchMode.LEFTMOST_LONGEST, h)) == Seq((1, 0, 4)))
+  }
+}
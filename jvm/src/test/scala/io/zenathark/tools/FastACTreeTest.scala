@@ -0,0 +1,109 @@
+package io.zenathark.tools;
+
+import org.scalatest.FlatSpec
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+
+class FastACTreeTest extends FlatSpec  {
+  import ACReference._
+
+  private def build(words: Seq[String]): FastACTree = {
+    val tree = new FastACTree()
+    words.foreach(w => tree.addWord(w))
+    tree
+  }
+
+  private def path(node: FastACTree): String =
+    if (node.isRoot) "" else path(node.parent) + node.chr
+
+  "A fast tree" should "match a naive substring search on both modes" in {
+    val random = new Random(42)
+    for (alphabet <- Seq("ab", "abcd", "abcdefghijklmnopqrstuvwxyz"); deterministic <- Seq(false, true)) {
+      for (_ <- 0 until 50) {
+        val words = ACReference.words(random, 1 + random.nextInt(30), alphabet, 6)
+        val text = ACReference.text(random, 300, alphabet + "A. ", words).toCharArray
+        val tree = build(words).compile(deterministic)
+        val expected = all(words, new String(text))
+        assert(collect(h => tree.scan(text, 0, text.length, h)).sorted == expected)
+        assert(tree.count(text, 0, text.length) == expected.size)
+      }
+    }
+  }
+
+  "A deterministic tree" should "move on the same states as the fail links" in {
+    val words = Seq("he", "she", "his", "hers", "hershey")
+    val sparse = build(words).compile(false)
+    val dense = build(words).compile(true)
+    var s = sparse
+    var d = dense
+    for (c <- "ushershisheyhersheyx") {
+      s = s.next(c)
+      d = d.next(c)
+      assert(path(s) == path(d))
+      assert(d.delta != null && s.delta == null)
+    }
+  }
+
+  "the scan method" should "only report the matches inside a slice" in {
+    val tree = build(Seq("ab", "bc", "abc"))
+    val chars = "abcabc".toCharArray
+    assert(collect(h => tree.scan(chars, 1, 5, h)).sorted == Seq((0, 3, 5), (1, 1, 3)))
+  }
+
+  private def distance(a: String, b: String): Int = {
+    val d = Array.tabulate(a.length + 1, b.length + 1)((i, j) => if (i == 0) j else if (j == 0) i else 0)
+    for (i <- 1 to a.length; j <- 1 to b.length)
+      d(i)(j) = Seq(d(i - 1)(j) + 1, d(i)(j - 1) + 1, d(i - 1)(j - 1) + (if (a(i - 1) == b(j - 1)) 0 else 1)).min
+    d(a.length)(b.length)
+  }
+
+  "The fuzzy search" should "find the words within k edits of a token" in {
+    val tree = build(Seq("error", "errors", "terror", "mirror", "keyword"))
+    val cases = Seq(
+      ("error", 0, Set("error")),
+      ("eror", 1, Set("error")),
+      ("erors", 2, Set("error", "errors")),
+      ("keywrod", 2, Set("keyword")),
+      ("xyz", 1, Set[String]()))
+    for ((token, k, words) <- cases)
+      assert(tree.fuzzySearch(token, k).asScala.toSet == words, token)
+  }
+
+  "The fuzzy search" should "match the edit distance to every word" in {
+    val random = new Random(42)
+    for (_ <- 0 until 100) {
+      val words = ACReference.words(random, 1 + random.nextInt(30), "abc", 7)
+      val tree = build(words)
+      val token = ACReference.randomString(random, random.nextInt(8), "abcd")
+      val k = random.nextInt(4)
+      val found = scala.collection.mutable.Map[String, Int]()
+      tree.fuzzySearch(token, k, (w: String, d: Int) => found(w) = d)
+      assert(found.toMap == words.map(w => w -> distance(w, token)).filter(_._2 <= k).toMap)
+    }
+  }
+
+  "The fuzzy scan" should "search every token, reusing the rows of the longest one" in {
+    val random = new Random(7)
+    for (_ <- 0 until 50) {
+      val words = ACReference.words(random, 1 + random.nextInt(30), "abc", 7)
+      val tree = build(words)
+      // Tokens of decreasing and increasing lengths share the rows
+      val text = ACReference.randomString(random, 80, "abcabc .")
+      val k = random.nextInt(3)
+      val expected = for {
+        m <- "[a-z]+".r.findAllMatchIn(text).toSeq
+        w <- tree.fuzzySearch(m.matched, k).asScala
+      } yield (words.indexOf(w), m.start, m.end)
+      val chars = text.toCharArray
+      assert(collect(h => tree.fuzzyScan(chars, 0, chars.length, k, h)).sorted == expected.sorted)
+    }
+  }
+
+  "The fuzzy search" should "reject negative distances" in {
+    val tree = build(Seq("ab"))
+    assertThrows[IllegalArgumentException](tree.fuzzySearch("ab", -1))
+    assertThrows[IllegalArgumentException](tree.fuzzyScan("ab".toCharArray, 0, 2, -1, (_: Int, _: Int, _: Int) => ()))
+  }
+}
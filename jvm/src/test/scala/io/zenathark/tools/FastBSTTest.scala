@@ -0,0 +1,89 @@
+package io.zenathark.tools;
+
+import org.scalatest.FlatSpec
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+
+class FastBSTTest extends FlatSpec  {
+
+  /** Checks the red-black invariants and parent links, returns the black height */
+  private def check(node: FastBST, parent: FastBST, lo: Long, hi: Long): Int = {
+    if (node == null) return 1
+    assert(node.parent eq parent)
+    assert(lo < node.label && node.label < hi)
+    if (node.red) {
+      assert(node.left == null || !node.left.red)
+      assert(node.right == null || !node.right.red)
+    }
+    val left = check(node.left, node, lo, node.label)
+    val right = check(node.right, node, node.label, hi)
+    assert(left == right)
+    left + (if (node.red) 0 else 1)
+  }
+
+  private def checkTree(root: FastBST, expected: java.util.TreeSet[Integer]): Unit = {
+    if (root != null) assert(!root.red)
+    check(root, null, Long.MinValue, Long.MaxValue)
+    assert(FastBST.toArray(root).toSeq == expected.asScala.toSeq.map(_.intValue))
+  }
+
+  private def height(node: FastBST): Int =
+    if (node == null) 0 else 1 + math.max(height(node.left), height(node.right))
+
+  private def randomOps(random: Random, root: FastBST, expected: java.util.TreeSet[Integer]): Unit = {
+    var tree = root
+    for (_ <- 0 until 2000) {
+      val key = random.nextInt(500)
+      if (random.nextInt(3) == 0) {
+        tree = FastBST.removeBalanced(tree, key)
+        expected.remove(key)
+      } else {
+        tree = FastBST.insertBalanced(tree, key)
+        expected.add(key)
+      }
+      checkTree(tree, expected)
+    }
+  }
+
+  "A balanced tree" should "keep the red-black invariants on random inserts and removes" in {
+    val random = new Random(42)
+    for (_ <- 0 until 5)
+      randomOps(random, null, new java.util.TreeSet[Integer]())
+  }
+
+  "A balanced tree" should "stay logarithmic on sorted inserts" in {
+    var tree: FastBST = null
+    val n = 1 << 14
+    for (i <- 0 until n) tree = FastBST.insertBalanced(tree, i)
+    checkTree(tree, new java.util.TreeSet[Integer]((0 until n).map(Int.box).asJava))
+    assert(height(tree) <= 2 * (32 - Integer.numberOfLeadingZeros(n + 1)))
+  }
+
+  "A bulk built tree" should "be a red-black tree for the balanced operations" in {
+    val random = new Random(7)
+    for (n <- Seq(0, 1, 2, 3, 7, 8, 9, 100, 255, 256, 257)) {
+      val keys = Array.fill(n)(random.nextInt(1000))
+      val expected = new java.util.TreeSet[Integer](keys.toSeq.map(Int.box).asJava)
+      val unsorted = FastBST.fromUnsorted(keys)
+      checkTree(unsorted, expected)
+      val sorted = FastBST.fromSorted(expected.asScala.toArray.map(_.intValue))
+      checkTree(sorted, expected)
+      randomOps(random, sorted, expected)
+    }
+  }
+
+  "A merged tree" should "hold the keys of both trees" in {
+    val random = new Random(3)
+    val a = Array.fill(300)(random.nextInt(1000))
+    val b = Array.fill(200)(random.nextInt(1000))
+    val expected = new java.util.TreeSet[Integer]((a ++ b).toSeq.map(Int.box).asJava)
+    checkTree(FastBST.merge(FastBST.fromUnsorted(a), FastBST.fromUnsorted(b)), expected)
+  }
+
+  "A sorted build" should "reject keys that are not strictly increasing" in {
+    assertThrows[IllegalArgumentException](FastBST.fromSorted(Array(1, 3, 2)))
+    assertThrows[IllegalArgumentException](FastBST.fromSorted(Array(1, 1)))
+  }
+}
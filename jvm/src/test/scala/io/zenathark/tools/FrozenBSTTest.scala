@@ -0,0 +1,68 @@
+package io.zenathark.tools;
+
+import io.zenathark.primitives.IntBST
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+
+class FrozenBSTTest extends FlatSpec  {
+
+  private val sizes = Seq(0, 1) ++ (1 to 10).flatMap(k => Seq((1 << k) - 1, 1 << k, (1 << k) + 1))
+
+  /** Strictly increasing keys with gaps, so there are absent keys between them */
+  private def keys(random: Random, n: Int): Array[scala.Int] =
+    Array.iterate(-1000 + random.nextInt(10), n)(_ + 2 + random.nextInt(3))
+
+  private def checkTree(tree: FrozenBST, sorted: Array[scala.Int]): Unit = {
+    assert(tree.size() == sorted.length)
+    assert(tree.toArray.toSeq == sorted.toSeq)
+    for (k <- sorted) {
+      assert(tree.contains(k))
+      assert(tree.get(tree.search(k)) == k)
+    }
+    // Absent keys between, below the minimum and above the maximum
+    val present = sorted.toSet
+    val probes = sorted.flatMap(k => Seq(k - 1, k + 1)) ++
+      Seq(scala.Int.MinValue, scala.Int.MaxValue, -2000, 2000)
+    for (k <- probes if !present(k)) {
+      assert(!tree.contains(k), k)
+      assert(tree.search(k) == -1, k)
+    }
+  }
+
+  "A frozen tree" should "find the keys of the source array" in {
+    val random = new Random(42)
+    for (n <- sizes) {
+      val sorted = keys(random, n)
+      checkTree(FrozenBST.of(sorted, n), sorted)
+    }
+  }
+
+  "A frozen tree" should "handle the extreme int keys" in {
+    val sorted = Array(scala.Int.MinValue, -1, 0, scala.Int.MaxValue)
+    for (n <- 0 to sorted.length) checkTree(FrozenBST.of(sorted, n), sorted.take(n))
+  }
+
+  "A frozen tree" should "only take the first keys of the array" in {
+    val tree = FrozenBST.of(Array(1, 2, 3, 0), 3)
+    checkTree(tree, Array(1, 2, 3))
+  }
+
+  "A frozen tree" should "reject keys that are not strictly increasing" in {
+    assertThrows[IllegalArgumentException](FrozenBST.of(Array(1, 3, 2), 3))
+    assertThrows[IllegalArgumentException](FrozenBST.of(Array(1, 1), 2))
+  }
+
+  "A frozen tree" should "hold the keys of the tree it was frozen from" in {
+    val random = new Random(7)
+    for (n <- sizes) {
+      val sorted = keys(random, n)
+      val shuffled = random.shuffle(sorted.toSeq).toArray
+      checkTree(FastBST.freeze(FastBST.fromUnsorted(shuffled)), sorted)
+      val bst = new IntBST()
+      shuffled.foreach(bst.push)
+      checkTree(bst.freeze(), sorted)
+    }
+  }
+}
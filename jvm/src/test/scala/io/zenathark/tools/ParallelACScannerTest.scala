@@ -0,0 +1,53 @@
+package io.zenathark.tools;
+
+import java.util.concurrent.ForkJoinPool
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+
+class ParallelACScannerTest extends FlatSpec  {
+  import ACReference._
+
+  private def freeze(words: Seq[String]): DoubleArrayACTree = {
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    tree.freeze()
+  }
+
+  private def matches(list: MatchList): Seq[Match] =
+    (0 until list.size()).map(i => (list.patternId(i), list.start(i), list.end(i)))
+
+  "A parallel scanner" should "report the sequential matches, on the same order" in {
+    val random = new Random(42)
+    val pool = new ForkJoinPool(4)
+    try {
+      for (_ <- 0 until 50; chunkSize <- 1 to 7) {
+        val words = ACReference.words(random, 1 + random.nextInt(20), "abc", 6)
+        val text = ACReference.text(random, 200, "abcd", words).toCharArray
+        val automaton = freeze(words)
+        val sequential = collect(h => automaton.scan(text, 0, text.length, h))
+        val parallel = matches(new ParallelACScanner(automaton, pool, chunkSize).scan(text))
+        // Same order also means no match is duplicated on a chunk boundary
+        assert(parallel == sequential)
+        assert(parallel.sorted == all(words, new String(text)))
+      }
+    } finally {
+      pool.shutdown()
+    }
+  }
+
+  "A parallel scanner" should "only report the matches inside a slice" in {
+    val automaton = freeze(Seq("ab", "bc", "abc"))
+    val text = "abcabcabc".toCharArray
+    val scanner = new ParallelACScanner(automaton, ForkJoinPool.commonPool(), 2)
+    assert(matches(scanner.scan(text, 1, 8)) == collect(h => automaton.scan(text, 1, 8, h)))
+  }
+
+  "A parallel scanner" should "reject chunks that are not positive" in {
+    assertThrows[IllegalArgumentException] {
+      new ParallelACScanner(freeze(Seq("a")), ForkJoinPool.commonPool(), 0)
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package io.zenathark.tools;
+
+import java.io.{ByteArrayInputStream, StringReader}
+import java.nio.CharBuffer
+import java.nio.channels.Channels
+import java.nio.charset.StandardCharsets
+
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+
+class StreamingACMatcherTest extends FlatSpec  {
+  import ACReference._
+
+  private def freeze(words: Seq[String]): DoubleArrayACTree = {
+    val tree = new AhoCorasickTree()
+    words.foreach(w => tree.addWord(w))
+    tree.freeze()
+  }
+
+  private def stream(scan: StreamMatchHandler => Unit): Seq[Match] = {
+    val ans = ArrayBuffer[Match]()
+    scan((id: Int, start: Long, end: Long) => ans += ((id, start.toInt, end.toInt)))
+    ans
+  }
+
+  "A streaming matcher" should "find the matches crossing the chunk boundaries" in {
+    val random = new Random(42)
+    for (_ <- 0 until 100) {
+      val words = ACReference.words(random, 1 + random.nextInt(20), "abc", 6)
+      val text = ACReference.text(random, 300, "abcd", words)
+      val chars = text.toCharArray
+      val matcher = new StreamingACMatcher(freeze(words))
+      val matches = stream { h =>
+        var i = 0
+        while (i < chars.length) {
+          // Chunks of a single character included
+          val n = math.min(1 + random.nextInt(8), chars.length - i)
+          matcher.feed(chars, i, i + n, h)
+          i += n
+        }
+      }
+      assert(matches.sorted == all(words, text))
+      assert(matcher.position() == chars.length)
+    }
+  }
+
+  "A streaming matcher" should "scan readers, buffers and channels with small buffers" in {
+    val random = new Random(7)
+    for (_ <- 0 until 50) {
+      val words = ACReference.words(random, 1 + random.nextInt(20), "aé中b", 6)
+      val text = ACReference.text(random, 300, "aé中bc", words)
+      val expected = all(words, text)
+      val automaton = freeze(words)
+      val matcher = new StreamingACMatcher(automaton, 16 + random.nextInt(16))
+      assert(stream(h => matcher.reset().scan(new StringReader(text), h)).sorted == expected)
+      val bytes = text.getBytes(StandardCharsets.UTF_8)
+      val channel = Channels.newChannel(new ByteArrayInputStream(bytes))
+      assert(stream(h => matcher.reset().scan(channel, StandardCharsets.UTF_8, h)).sorted == expected)
+      assert(matcher.position() == text.length)
+      // A read-only buffer without a backing array, fed through the matcher buffer
+      val buffer = CharBuffer.wrap(text)
+      assert(stream(h => matcher.reset().feed(buffer, h)).sorted == expected)
+      assert(!buffer.hasRemaining)
+    }
+  }
+
+  "A streaming matcher" should "keep counting offsets until it is reset" in {
+    val matcher = new StreamingACMatcher(freeze(Seq("ab")))
+    val first = stream(h => matcher.feed("xa".toCharArray, 0, 2, h))
+    val second = stream(h => matcher.feed("bxab".toCharArray, 0, 4, h))
+    assert(first.isEmpty)
+    assert(second == Seq((0, 1, 3), (0, 4, 6)))
+    assert(stream(h => matcher.reset().feed("ab".toCharArray, 0, 2, h)) == Seq((0, 0, 2)))
+  }
+
+  "A streaming matcher" should "reject buffers smaller than 16 chars" in {
+    assertThrows[IllegalArgumentException] {
+      new StreamingACMatcher(freeze(Seq("a")), 15)
+    }
+  }
+}